@@ -0,0 +1,85 @@
+package org.apache.cordova.plugins.serial;
+
+import android.hardware.usb.UsbDevice;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Descriptors of the USB devices: deviceToJSONObj of a device the registry does not know, built
+ * on each call, the cached descriptor of an attached device, and the list getDevices sends,
+ * kept until a device is attached or detached.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeviceDescriptorBenchmark {
+
+  @Param({ "1", "16" })
+  public int devices;
+
+  private PluginHarness harness;
+  private DeviceRegistry registry;
+  private UsbDevice attached;
+  private UsbDevice unknown;
+  private UsbDevice extra;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    harness = new PluginHarness();
+    registry = new DeviceRegistry();
+    for (int i = 1; i <= devices; i++) {
+      attached = newDevice(i);
+      registry.attach(attached);
+    }
+    unknown = newDevice(devices + 1);
+    extra = newDevice(devices + 2);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    harness.close();
+  }
+
+  private static UsbDevice newDevice(int dev) {
+    return new UsbDevice(UsbDevice.getDeviceName(1000 + dev), 0x0403, 0x6001, 0, 0, 0, "FTDI", "FT232R USB UART", "6.00", "A" + dev);
+  }
+
+  @Benchmark
+  public JSONObject deviceToJSONObj() {
+    return harness.getSerial().deviceToJSONObj(unknown);
+  }
+
+  @Benchmark
+  public JSONObject cachedDescriptor() {
+    return registry.getDescriptor(attached);
+  }
+
+  @Benchmark
+  public JSONArray descriptorList() {
+    return registry.getDescriptors();
+  }
+
+  @Benchmark
+  public JSONArray descriptorListAfterChange() {
+    registry.attach(extra);
+    registry.detach(extra);
+    return registry.getDescriptors();
+  }
+}
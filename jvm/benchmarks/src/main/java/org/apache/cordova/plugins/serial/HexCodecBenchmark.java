@@ -0,0 +1,49 @@
+package org.apache.cordova.plugins.serial;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding of the strings of writeSerialHex, in mixed case as javascript may send them
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HexCodecBenchmark {
+
+  private static final char[] DIGITS = "0123456789abcdefABCDEF".toCharArray();
+
+  @Param({ "16", "1024", "65536" })
+  public int bytes;
+
+  private String hex;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    char[] chars = new char[bytes * 2];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = DIGITS[random.nextInt(DIGITS.length)];
+    }
+    hex = new String(chars);
+  }
+
+  @Benchmark
+  public byte[] decode() {
+    return HexCodec.decode(hex);
+  }
+}
@@ -0,0 +1,88 @@
+package org.apache.cordova.plugins.serial;
+
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Read paths, for a chunk the device sent: polled with readSerialByDeviceId, and streamed to
+ * the read callback, where the time includes the reader, the coalescing stage and the encoding
+ * of the multipart result.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReadBenchmark {
+
+  private static final long RESULT_TIMEOUT_MILLIS = 5000;
+
+  @Param({ "64", "1024", "16384" })
+  public int chunkSize;
+
+  @Param({ "115200", "921600" })
+  public int baudRate;
+
+  private PluginHarness harness;
+  private LoopbackTransport polledTransport;
+  private LoopbackTransport streamedTransport;
+  private JSONObject polledOpts;
+  private RecordingCallback readCallback;
+  private byte[] chunk;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    harness = new PluginHarness();
+    // the baud rate sizes the read buffers of the session
+    polledTransport = new LoopbackTransport();
+    polledOpts = new JSONObject().put("deviceId", harness.open(polledTransport, new JSONObject().put("baudRate", baudRate)));
+    readCallback = new RecordingCallback();
+    harness.execute("registerReadCallback", new JSONObject(), readCallback);
+    readCallback.next(RESULT_TIMEOUT_MILLIS);
+    streamedTransport = new LoopbackTransport();
+    harness.open(streamedTransport, new JSONObject().put("baudRate", baudRate).put("streaming", true));
+    chunk = new byte[chunkSize];
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    harness.close();
+  }
+
+  @Benchmark
+  public int poll() throws Exception {
+    polledTransport.inject(chunk, chunk.length);
+    int count = 0;
+    while (count < chunkSize) {
+      // a callback is finished by its first result
+      RecordingCallback callback = new RecordingCallback();
+      harness.execute("readSerialByDeviceId", polledOpts, callback);
+      count += RecordingCallback.data(callback.next(RESULT_TIMEOUT_MILLIS)).length;
+    }
+    return count;
+  }
+
+  @Benchmark
+  public int stream() throws Exception {
+    streamedTransport.inject(chunk, chunk.length);
+    int count = 0;
+    while (count < chunkSize) {
+      count += RecordingCallback.data(readCallback.next(RESULT_TIMEOUT_MILLIS)).length;
+    }
+    return count;
+  }
+}
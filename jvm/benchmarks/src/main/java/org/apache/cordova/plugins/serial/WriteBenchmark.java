@@ -0,0 +1,96 @@
+package org.apache.cordova.plugins.serial;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.cordova.PluginResult;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Write path of a polled session, from the writeSerialBinaryByDeviceId action to its success
+ * callback, and the same write read back with readSerialByDeviceId. The loopback takes as long
+ * as the line would to send the bytes at baudRate, 0 runs at memory speed and shows the
+ * overhead of the plugin alone. The read buffers are sized from the baud rate, one packet at 0,
+ * so echo then reads back in many small reads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriteBenchmark {
+
+  // longest wait for a callback, a 16 KiB write at 115200 baud takes 1.4 s
+  private static final long RESULT_TIMEOUT_MILLIS = 10000;
+
+  @Param({ "64", "1024", "16384" })
+  public int chunkSize;
+
+  @Param({ "115200", "921600", "0" })
+  public int baudRate;
+
+  private PluginHarness harness;
+  private LoopbackTransport transport;
+  private JSONObject opts;
+  private byte[] chunk;
+  private byte[] drain;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    harness = new PluginHarness();
+    transport = new LoopbackTransport();
+    transport.setSimulateLineRate(true);
+    int deviceId = harness.open(transport, new JSONObject().put("baudRate", baudRate));
+    opts = new JSONObject().put("deviceId", deviceId);
+    chunk = new byte[chunkSize];
+    for (int i = 0; i < chunk.length; i++) {
+      chunk[i] = (byte) i;
+    }
+    drain = new byte[chunkSize];
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    harness.close();
+  }
+
+  @Benchmark
+  public PluginResult write() throws Exception {
+    RecordingCallback callback = new RecordingCallback();
+    harness.execute("writeSerialBinaryByDeviceId", opts, chunk, callback);
+    PluginResult result = callback.next(RESULT_TIMEOUT_MILLIS);
+    // the loopback keeps what is written, taken back outside of the plugin
+    int count = 0;
+    while (count < chunkSize) {
+      count += transport.read(drain, 1);
+    }
+    return result;
+  }
+
+  @Benchmark
+  public int echo() throws Exception {
+    RecordingCallback callback = new RecordingCallback();
+    harness.execute("writeSerialBinaryByDeviceId", opts, chunk, callback);
+    callback.next(RESULT_TIMEOUT_MILLIS);
+    int count = 0;
+    while (count < chunkSize) {
+      // a callback is finished by its first result
+      callback = new RecordingCallback();
+      harness.execute("readSerialByDeviceId", opts, callback);
+      count += RecordingCallback.data(callback.next(RESULT_TIMEOUT_MILLIS)).length;
+    }
+    return count;
+  }
+}
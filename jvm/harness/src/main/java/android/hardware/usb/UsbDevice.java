@@ -0,0 +1,143 @@
+package android.hardware.usb;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * Stand-in of the Android USB device, whose android-all version has a private constructor and
+ * computes its id natively. The id is derived from the name as the platform does:
+ * /dev/bus/usb/001/002 is 1 * 1000 + 2. The device has no interface.
+ */
+public class UsbDevice implements Parcelable {
+
+  private final String mName;
+  private final int mVendorId;
+  private final int mProductId;
+  private final int mClass;
+  private final int mSubclass;
+  private final int mProtocol;
+  private final String mManufacturerName;
+  private final String mProductName;
+  private final String mVersion;
+  private final String mSerialNumber;
+
+  public UsbDevice(
+    String name,
+    int vendorId,
+    int productId,
+    int deviceClass,
+    int subclass,
+    int protocol,
+    String manufacturerName,
+    String productName,
+    String version,
+    String serialNumber
+  ) {
+    mName = name;
+    mVendorId = vendorId;
+    mProductId = productId;
+    mClass = deviceClass;
+    mSubclass = subclass;
+    mProtocol = protocol;
+    mManufacturerName = manufacturerName;
+    mProductName = productName;
+    mVersion = version;
+    mSerialNumber = serialNumber;
+  }
+
+  public String getDeviceName() {
+    return mName;
+  }
+
+  public String getManufacturerName() {
+    return mManufacturerName;
+  }
+
+  public String getProductName() {
+    return mProductName;
+  }
+
+  public String getVersion() {
+    return mVersion;
+  }
+
+  public String getSerialNumber() {
+    return mSerialNumber;
+  }
+
+  public int getDeviceId() {
+    return getDeviceId(mName);
+  }
+
+  public int getVendorId() {
+    return mVendorId;
+  }
+
+  public int getProductId() {
+    return mProductId;
+  }
+
+  public int getDeviceClass() {
+    return mClass;
+  }
+
+  public int getDeviceSubclass() {
+    return mSubclass;
+  }
+
+  public int getDeviceProtocol() {
+    return mProtocol;
+  }
+
+  public int getInterfaceCount() {
+    return 0;
+  }
+
+  public UsbInterface getInterface(int index) {
+    throw new IndexOutOfBoundsException("No interface " + index);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o instanceof UsbDevice) {
+      return ((UsbDevice) o).mName.equals(mName);
+    } else if (o instanceof String) {
+      return ((String) o).equals(mName);
+    } else {
+      return false;
+    }
+  }
+
+  @Override
+  public int hashCode() {
+    return mName.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "UsbDevice[mName=" + mName + ",mVendorId=" + mVendorId + ",mProductId=" + mProductId + "]";
+  }
+
+  @Override
+  public int describeContents() {
+    return 0;
+  }
+
+  @Override
+  public void writeToParcel(Parcel parcel, int flags) {
+    throw new UnsupportedOperationException("Not parcelable on the JVM");
+  }
+
+  public static int getDeviceId(String name) {
+    String[] parts = name.split("/");
+    try {
+      return Integer.parseInt(parts[parts.length - 2]) * 1000 + Integer.parseInt(parts[parts.length - 1]);
+    } catch (RuntimeException e) {
+      return -1;
+    }
+  }
+
+  public static String getDeviceName(int id) {
+    return String.format("/dev/bus/usb/%03d/%03d", id / 1000, id % 1000);
+  }
+}
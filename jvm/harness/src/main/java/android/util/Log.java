@@ -0,0 +1,74 @@
+package android.util;
+
+/**
+ * Stand-in of the Android log, whose android-all version needs the native liblog: warnings and
+ * errors go to the standard error, the rest is dropped so benchmarks do not time the console.
+ */
+public final class Log {
+
+  public static final int VERBOSE = 2;
+  public static final int DEBUG = 3;
+  public static final int INFO = 4;
+  public static final int WARN = 5;
+  public static final int ERROR = 6;
+  public static final int ASSERT = 7;
+
+  private Log() {}
+
+  public static int v(String tag, String msg) {
+    return 0;
+  }
+
+  public static int v(String tag, String msg, Throwable tr) {
+    return 0;
+  }
+
+  public static int d(String tag, String msg) {
+    return 0;
+  }
+
+  public static int d(String tag, String msg, Throwable tr) {
+    return 0;
+  }
+
+  public static int i(String tag, String msg) {
+    return 0;
+  }
+
+  public static int i(String tag, String msg, Throwable tr) {
+    return 0;
+  }
+
+  public static int w(String tag, String msg) {
+    return println(WARN, tag, msg, null);
+  }
+
+  public static int w(String tag, String msg, Throwable tr) {
+    return println(WARN, tag, msg, tr);
+  }
+
+  public static int w(String tag, Throwable tr) {
+    return println(WARN, tag, "", tr);
+  }
+
+  public static int e(String tag, String msg) {
+    return println(ERROR, tag, msg, null);
+  }
+
+  public static int e(String tag, String msg, Throwable tr) {
+    return println(ERROR, tag, msg, tr);
+  }
+
+  public static boolean isLoggable(String tag, int level) {
+    return level >= WARN;
+  }
+
+  private static int println(int priority, String tag, String msg, Throwable tr) {
+    String line = (priority == ERROR ? "E/" : "W/") + tag + ": " + msg;
+    System.err.println(line);
+    if (tr != null) {
+      tr.printStackTrace();
+    }
+    return line.length();
+  }
+}
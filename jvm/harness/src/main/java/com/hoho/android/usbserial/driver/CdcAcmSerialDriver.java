@@ -0,0 +1,27 @@
+package com.hoho.android.usbserial.driver;
+
+import android.hardware.usb.UsbDevice;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stand-in of the usb-serial-for-android 3.7.0 driver, without ports: there is no USB on the JVM
+ */
+public class CdcAcmSerialDriver implements UsbSerialDriver {
+
+  private final UsbDevice mDevice;
+
+  public CdcAcmSerialDriver(UsbDevice device) {
+    mDevice = device;
+  }
+
+  @Override
+  public UsbDevice getDevice() {
+    return mDevice;
+  }
+
+  @Override
+  public List<UsbSerialPort> getPorts() {
+    return Collections.emptyList();
+  }
+}
@@ -0,0 +1,36 @@
+package com.hoho.android.usbserial.driver;
+
+import android.hardware.usb.UsbDevice;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stand-in of the usb-serial-for-android 3.7.0 driver, without ports: there is no USB on the JVM.
+ * The port type is kept for the latency timer the plugin sets.
+ */
+public class FtdiSerialDriver implements UsbSerialDriver {
+
+  private final UsbDevice mDevice;
+
+  public FtdiSerialDriver(UsbDevice device) {
+    mDevice = device;
+  }
+
+  @Override
+  public UsbDevice getDevice() {
+    return mDevice;
+  }
+
+  @Override
+  public List<UsbSerialPort> getPorts() {
+    return Collections.emptyList();
+  }
+
+  public abstract class FtdiSerialPort implements UsbSerialPort {
+
+    public abstract void setLatencyTimer(int latencyTime) throws IOException;
+
+    public abstract int getLatencyTimer() throws IOException;
+  }
+}
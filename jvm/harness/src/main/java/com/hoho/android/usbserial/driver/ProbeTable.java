@@ -0,0 +1,22 @@
+package com.hoho.android.usbserial.driver;
+
+import android.hardware.usb.UsbDevice;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stand-in of the usb-serial-for-android 3.7.0 table of drivers by vendor and product id
+ */
+public class ProbeTable {
+
+  private final Map<Long, Class<? extends UsbSerialDriver>> mProbeTable = new HashMap<>();
+
+  public ProbeTable addProduct(int vendorId, int productId, Class<? extends UsbSerialDriver> driverClass) {
+    mProbeTable.put(((long) vendorId << 16) | productId, driverClass);
+    return this;
+  }
+
+  public Class<? extends UsbSerialDriver> findDriver(final UsbDevice usbDevice) {
+    return mProbeTable.get(((long) usbDevice.getVendorId() << 16) | usbDevice.getProductId());
+  }
+}
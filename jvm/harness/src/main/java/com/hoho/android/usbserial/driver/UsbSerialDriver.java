@@ -0,0 +1,13 @@
+package com.hoho.android.usbserial.driver;
+
+import android.hardware.usb.UsbDevice;
+import java.util.List;
+
+/**
+ * Stand-in of the usb-serial-for-android 3.7.0 driver interface
+ */
+public interface UsbSerialDriver {
+  UsbDevice getDevice();
+
+  List<UsbSerialPort> getPorts();
+}
@@ -0,0 +1,52 @@
+package com.hoho.android.usbserial.driver;
+
+import android.hardware.usb.UsbDevice;
+import android.hardware.usb.UsbManager;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stand-in of the usb-serial-for-android 3.7.0 prober. The default table is empty: the known
+ * chips of the library are not listed, the harness has no USB device to probe.
+ */
+public class UsbSerialProber {
+
+  private final ProbeTable mProbeTable;
+
+  public UsbSerialProber(ProbeTable probeTable) {
+    mProbeTable = probeTable;
+  }
+
+  public static UsbSerialProber getDefaultProber() {
+    return new UsbSerialProber(getDefaultProbeTable());
+  }
+
+  public static ProbeTable getDefaultProbeTable() {
+    return new ProbeTable();
+  }
+
+  public List<UsbSerialDriver> findAllDrivers(final UsbManager usbManager) {
+    List<UsbSerialDriver> result = new ArrayList<>();
+    for (UsbDevice usbDevice : usbManager.getDeviceList().values()) {
+      UsbSerialDriver driver = probeDevice(usbDevice);
+      if (driver != null) {
+        result.add(driver);
+      }
+    }
+    return result;
+  }
+
+  public UsbSerialDriver probeDevice(final UsbDevice usbDevice) {
+    Class<? extends UsbSerialDriver> driverClass = mProbeTable.findDriver(usbDevice);
+    if (driverClass == null) {
+      return null;
+    }
+    try {
+      Constructor<? extends UsbSerialDriver> ctor = driverClass.getConstructor(UsbDevice.class);
+      return ctor.newInstance(usbDevice);
+    } catch (ReflectiveOperationException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
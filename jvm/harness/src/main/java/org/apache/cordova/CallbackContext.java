@@ -0,0 +1,84 @@
+package org.apache.cordova;
+
+import android.util.Log;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Stand-in of the Cordova framework callback: like the real one, a result without keepCallback
+ * finishes it and later results are dropped. Instead of going to a web view, the results are
+ * handed to {@link #onResult(PluginResult)}, overridden by the tests to record them.
+ */
+public class CallbackContext {
+
+  private static final String LOG_TAG = "CordovaPlugin";
+
+  private final String callbackId;
+  private boolean finished;
+
+  public CallbackContext(String callbackId) {
+    this.callbackId = callbackId;
+  }
+
+  public boolean isFinished() {
+    return finished;
+  }
+
+  public String getCallbackId() {
+    return callbackId;
+  }
+
+  public void sendPluginResult(PluginResult pluginResult) {
+    synchronized (this) {
+      if (finished) {
+        Log.w(LOG_TAG, "Attempted to send a second callback for ID: " + callbackId + "\nResult was: " + pluginResult.getMessage());
+        return;
+      } else {
+        finished = !pluginResult.getKeepCallback();
+      }
+    }
+    onResult(pluginResult);
+  }
+
+  /**
+   * Receives every result sent while the callback was not finished
+   * @param pluginResult the result
+   */
+  protected void onResult(PluginResult pluginResult) {}
+
+  public void success(JSONObject message) {
+    sendPluginResult(new PluginResult(PluginResult.Status.OK, message));
+  }
+
+  public void success(String message) {
+    sendPluginResult(new PluginResult(PluginResult.Status.OK, message));
+  }
+
+  public void success(JSONArray message) {
+    sendPluginResult(new PluginResult(PluginResult.Status.OK, message));
+  }
+
+  public void success(byte[] message) {
+    sendPluginResult(new PluginResult(PluginResult.Status.OK, message));
+  }
+
+  public void success(int message) {
+    sendPluginResult(new PluginResult(PluginResult.Status.OK, message));
+  }
+
+  public void success() {
+    sendPluginResult(new PluginResult(PluginResult.Status.OK));
+  }
+
+  public void error(JSONObject message) {
+    sendPluginResult(new PluginResult(PluginResult.Status.ERROR, message));
+  }
+
+  public void error(String message) {
+    sendPluginResult(new PluginResult(PluginResult.Status.ERROR, message));
+  }
+
+  public void error(int message) {
+    sendPluginResult(new PluginResult(PluginResult.Status.ERROR, message));
+  }
+}
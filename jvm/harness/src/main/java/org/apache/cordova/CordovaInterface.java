@@ -0,0 +1,17 @@
+package org.apache.cordova;
+
+import android.app.Activity;
+import android.content.Context;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Stand-in of the Cordova framework interface, with the members the plugin uses. Tests and
+ * benchmarks provide the thread pool, there is no activity on the JVM.
+ */
+public interface CordovaInterface {
+  Activity getActivity();
+
+  Context getContext();
+
+  ExecutorService getThreadPool();
+}
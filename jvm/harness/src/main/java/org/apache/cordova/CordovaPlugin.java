@@ -0,0 +1,27 @@
+package org.apache.cordova;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+/**
+ * Stand-in of the Cordova framework plugin base class. The harness sets {@link #cordova} itself
+ * and never calls {@link #pluginInitialize()}, which needs the USB service of an activity.
+ */
+public class CordovaPlugin {
+
+  public CordovaInterface cordova;
+
+  protected void pluginInitialize() {}
+
+  public boolean execute(String action, JSONArray args, CallbackContext callbackContext) throws JSONException {
+    return false;
+  }
+
+  public void onPause(boolean multitasking) {}
+
+  public void onResume(boolean multitasking) {}
+
+  public void onDestroy() {}
+
+  public void onReset() {}
+}
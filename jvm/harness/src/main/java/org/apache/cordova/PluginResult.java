@@ -0,0 +1,153 @@
+package org.apache.cordova;
+
+import java.util.Base64;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Stand-in of the Cordova framework result, encoding its message as the real one does before it
+ * crosses the bridge: JSON as text, binary data base64 encoded, multipart results part by part.
+ * The encoding is part of the cost of a delivery, so the benchmarks pay it here too.
+ */
+public class PluginResult {
+
+  private final int status;
+  private final int messageType;
+  private boolean keepCallback = false;
+  private String strMessage;
+  private String encodedMessage;
+  private List<PluginResult> multipartMessages;
+
+  public PluginResult(Status status) {
+    this(status, PluginResult.StatusMessages[status.ordinal()]);
+  }
+
+  public PluginResult(Status status, String message) {
+    this.status = status.ordinal();
+    this.messageType = message == null ? MESSAGE_TYPE_NULL : MESSAGE_TYPE_STRING;
+    this.strMessage = message;
+  }
+
+  public PluginResult(Status status, JSONArray message) {
+    this.status = status.ordinal();
+    this.messageType = MESSAGE_TYPE_JSON;
+    encodedMessage = message.toString();
+  }
+
+  public PluginResult(Status status, JSONObject message) {
+    this.status = status.ordinal();
+    this.messageType = MESSAGE_TYPE_JSON;
+    encodedMessage = message.toString();
+  }
+
+  public PluginResult(Status status, int i) {
+    this.status = status.ordinal();
+    this.messageType = MESSAGE_TYPE_NUMBER;
+    this.encodedMessage = "" + i;
+  }
+
+  public PluginResult(Status status, float f) {
+    this.status = status.ordinal();
+    this.messageType = MESSAGE_TYPE_NUMBER;
+    this.encodedMessage = "" + f;
+  }
+
+  public PluginResult(Status status, boolean b) {
+    this.status = status.ordinal();
+    this.messageType = MESSAGE_TYPE_BOOLEAN;
+    this.encodedMessage = Boolean.toString(b);
+  }
+
+  public PluginResult(Status status, byte[] data) {
+    this(status, data, false);
+  }
+
+  public PluginResult(Status status, byte[] data, boolean binaryString) {
+    this.status = status.ordinal();
+    this.messageType = binaryString ? MESSAGE_TYPE_BINARYSTRING : MESSAGE_TYPE_ARRAYBUFFER;
+    this.encodedMessage = Base64.getEncoder().encodeToString(data);
+  }
+
+  public PluginResult(Status status, List<PluginResult> multipartMessages) {
+    this.status = status.ordinal();
+    this.messageType = MESSAGE_TYPE_MULTIPART;
+    this.multipartMessages = multipartMessages;
+  }
+
+  public void setKeepCallback(boolean b) {
+    this.keepCallback = b;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public int getMessageType() {
+    return messageType;
+  }
+
+  public String getMessage() {
+    if (encodedMessage == null) {
+      encodedMessage = JSONObject.quote(strMessage);
+    }
+    return encodedMessage;
+  }
+
+  public int getMultipartMessagesSize() {
+    return multipartMessages.size();
+  }
+
+  public PluginResult getMultipartMessage(int index) {
+    return multipartMessages.get(index);
+  }
+
+  /**
+   * If messageType == MESSAGE_TYPE_STRING, then returns the message string.
+   * Otherwise, returns null.
+   */
+  public String getStrMessage() {
+    return strMessage;
+  }
+
+  public boolean getKeepCallback() {
+    return this.keepCallback;
+  }
+
+  public static final int MESSAGE_TYPE_STRING = 1;
+  public static final int MESSAGE_TYPE_JSON = 2;
+  public static final int MESSAGE_TYPE_NUMBER = 3;
+  public static final int MESSAGE_TYPE_BOOLEAN = 4;
+  public static final int MESSAGE_TYPE_NULL = 5;
+  public static final int MESSAGE_TYPE_ARRAYBUFFER = 6;
+  // Use BINARYSTRING when your string may contain null characters.
+  // This is required to work around a bug in the platform :(.
+  public static final int MESSAGE_TYPE_BINARYSTRING = 7;
+  public static final int MESSAGE_TYPE_MULTIPART = 8;
+
+  public static String[] StatusMessages = new String[] {
+    "No result",
+    "OK",
+    "Class not found",
+    "Illegal access",
+    "Instantiation error",
+    "Malformed url",
+    "IO error",
+    "Invalid action",
+    "JSON error",
+    "Error",
+  };
+
+  public enum Status {
+    NO_RESULT,
+    OK,
+    CLASS_NOT_FOUND_EXCEPTION,
+    ILLEGAL_ACCESS_EXCEPTION,
+    INSTANTIATION_EXCEPTION,
+    MALFORMED_URL_EXCEPTION,
+    IO_EXCEPTION,
+    INVALID_ACTION,
+    JSON_EXCEPTION,
+    ERROR,
+  }
+}
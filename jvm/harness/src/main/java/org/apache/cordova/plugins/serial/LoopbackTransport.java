@@ -0,0 +1,206 @@
+package org.apache.cordova.plugins.serial;
+
+import com.hoho.android.usbserial.driver.UsbSerialPort;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory {@link SerialTransport}: the bytes written are read back, like an adapter with TX
+ * wired to RX. Runs on any JVM, and can simulate the line rate and inject faults so throughput,
+ * latency and error handling can be exercised without a device.
+ */
+public class LoopbackTransport implements SerialTransport {
+
+  private static final int DEFAULT_PACKET_SIZE = 64;
+
+  private final int packetSize;
+  // received bytes not read yet, as a ring
+  private byte[] ring = new byte[4096];
+  private int head = 0;
+  private int count = 0;
+  private boolean closed = false;
+  private int baudRate = 0;
+  private boolean simulateLineRate = false;
+  // faults thrown by the next read or write
+  private IOException readFault = null;
+  private IOException writeFault = null;
+  private boolean disconnected = false;
+
+  public LoopbackTransport() {
+    this(DEFAULT_PACKET_SIZE);
+  }
+
+  /**
+   * @param packetSize the transfer size reported to the plugin, 0 for none
+   */
+  public LoopbackTransport(int packetSize) {
+    this.packetSize = packetSize;
+  }
+
+  /**
+   * Make writes take as long as sending the bytes at the baud rate, 10 bits per byte
+   */
+  public synchronized void setSimulateLineRate(boolean simulateLineRate) {
+    this.simulateLineRate = simulateLineRate;
+  }
+
+  /**
+   * Throw fault from the next read
+   */
+  public synchronized void failNextRead(IOException fault) {
+    readFault = fault;
+    notifyAll();
+  }
+
+  /**
+   * Throw fault from the next write
+   */
+  public synchronized void failNextWrite(IOException fault) {
+    writeFault = fault;
+  }
+
+  /**
+   * Fail every following operation, as when the device is unplugged
+   */
+  public synchronized void disconnect() {
+    disconnected = true;
+    notifyAll();
+  }
+
+  /**
+   * Receive bytes as if the device sent them, without a write
+   */
+  public synchronized void inject(byte[] data, int length) {
+    append(data, length);
+  }
+
+  public synchronized int available() {
+    return count;
+  }
+
+  @Override
+  public synchronized void setParameters(int baudRate, int dataBits, int stopBits, int parity) throws IOException {
+    checkOpen();
+    this.baudRate = baudRate;
+  }
+
+  @Override
+  public synchronized void setDTR(boolean value) throws IOException {
+    checkOpen();
+  }
+
+  @Override
+  public synchronized void setRTS(boolean value) throws IOException {
+    checkOpen();
+  }
+
+  @Override
+  public synchronized void setFlowControl(UsbSerialPort.FlowControl flowControl) throws IOException {
+    checkOpen();
+  }
+
+  @Override
+  public synchronized int read(byte[] dest, int timeoutMillis) throws IOException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    while (true) {
+      checkOpen();
+      if (readFault != null) {
+        IOException fault = readFault;
+        readFault = null;
+        throw fault;
+      }
+      if (count > 0) {
+        break;
+      }
+      long remaining = deadline - System.nanoTime();
+      if (timeoutMillis > 0 && remaining <= 0) {
+        return 0;
+      }
+      try {
+        if (timeoutMillis > 0) {
+          TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        } else {
+          wait();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted.");
+      }
+    }
+    int len = Math.min(count, dest.length);
+    int first = Math.min(len, ring.length - head);
+    System.arraycopy(ring, head, dest, 0, first);
+    System.arraycopy(ring, 0, dest, first, len - first);
+    head = (head + len) % ring.length;
+    count -= len;
+    return len;
+  }
+
+  @Override
+  public void write(byte[] src, int length, int timeoutMillis) throws IOException {
+    long lineNanos;
+    synchronized (this) {
+      checkOpen();
+      if (writeFault != null) {
+        IOException fault = writeFault;
+        writeFault = null;
+        throw fault;
+      }
+      lineNanos = simulateLineRate && baudRate > 0 ? TimeUnit.SECONDS.toNanos(length * 10L) / baudRate : 0;
+    }
+    if (lineNanos > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(lineNanos);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted.");
+      }
+    }
+    synchronized (this) {
+      checkOpen();
+      append(src, length);
+    }
+  }
+
+  private void append(byte[] data, int length) {
+    if (count + length > ring.length) {
+      byte[] grown = new byte[Math.max(ring.length * 2, count + length)];
+      int first = Math.min(count, ring.length - head);
+      System.arraycopy(ring, head, grown, 0, first);
+      System.arraycopy(ring, 0, grown, first, count - first);
+      ring = grown;
+      head = 0;
+    }
+    int tail = (head + count) % ring.length;
+    int first = Math.min(length, ring.length - tail);
+    System.arraycopy(data, 0, ring, tail, first);
+    System.arraycopy(data, first, ring, 0, length - first);
+    count += length;
+    notifyAll();
+  }
+
+  private void checkOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Connection closed");
+    }
+    if (disconnected) {
+      throw new IOException("Connection lost");
+    }
+  }
+
+  @Override
+  public int getReadPacketSize() {
+    return packetSize;
+  }
+
+  @Override
+  public int getWritePacketSize() {
+    return packetSize;
+  }
+
+  @Override
+  public synchronized void close() {
+    closed = true;
+    notifyAll();
+  }
+}
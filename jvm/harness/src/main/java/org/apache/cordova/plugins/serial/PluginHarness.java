@@ -0,0 +1,86 @@
+package org.apache.cordova.plugins.serial;
+
+import android.app.Activity;
+import android.content.Context;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.CordovaInterface;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A {@link Serial} plugin running on the JVM: actions are executed with the arguments www/serial.js
+ * sends, on a thread pool like the Cordova one, and devices are virtual sessions over any
+ * {@link SerialTransport}. Used by the tests and the benchmarks.
+ */
+public class PluginHarness implements CordovaInterface, AutoCloseable {
+
+  private final ExecutorService threadPool = Executors.newCachedThreadPool();
+  private final Serial serial = new Serial();
+
+  public PluginHarness() {
+    serial.cordova = this;
+  }
+
+  public Serial getSerial() {
+    return serial;
+  }
+
+  /**
+   * Open a virtual device over a transport
+   * @param transport the transport, closed with the device
+   * @param opts the open options
+   * @return the id of the device, to pass as deviceId
+   */
+  public int open(SerialTransport transport, JSONObject opts) throws IOException, JSONException {
+    return serial.openVirtual(transport, opts).getDeviceId();
+  }
+
+  /**
+   * Execute an action taking an opts argument
+   * @return false if the action is unknown
+   */
+  public boolean execute(String action, JSONObject opts, CallbackContext callbackContext) throws JSONException {
+    JSONArray args = new JSONArray().put(new JSONObject().put("opts", opts));
+    return serial.execute(action, args, callbackContext);
+  }
+
+  /**
+   * Execute an action taking an opts argument and an ArrayBuffer, sent base64 encoded
+   * @return false if the action is unknown
+   */
+  public boolean execute(String action, JSONObject opts, byte[] data, CallbackContext callbackContext) throws JSONException {
+    JSONArray args = new JSONArray().put(new JSONObject().put("opts", opts)).put(Base64.getEncoder().encodeToString(data));
+    return serial.execute(action, args, callbackContext);
+  }
+
+  @Override
+  public Activity getActivity() {
+    return null;
+  }
+
+  @Override
+  public Context getContext() {
+    return null;
+  }
+
+  @Override
+  public ExecutorService getThreadPool() {
+    return threadPool;
+  }
+
+  /**
+   * Close every device and stop the threads
+   */
+  @Override
+  public void close() throws InterruptedException {
+    serial.onDestroy();
+    threadPool.shutdownNow();
+    threadPool.awaitTermination(5, TimeUnit.SECONDS);
+  }
+}
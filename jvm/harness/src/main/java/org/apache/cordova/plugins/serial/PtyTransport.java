@@ -0,0 +1,118 @@
+package org.apache.cordova.plugins.serial;
+
+import com.hoho.android.usbserial.driver.UsbSerialPort;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SerialTransport} over a Linux pseudo-terminal, for test hosts without USB. The other
+ * end plays the device, e.g. the pair created by
+ * <code>socat -d -d pty,raw,echo=0 pty,raw,echo=0</code>, or a loopback with
+ * <code>socat pty,raw,echo=0,link=/tmp/ttyV0 exec:cat</code>. The line parameters are
+ * ignored, a pty has no line rate.
+ */
+public class PtyTransport implements SerialTransport {
+
+  // wait between two checks for incoming bytes
+  private static final long POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+
+  private final String path;
+  private final FileInputStream input;
+  private final FileOutputStream output;
+  private volatile boolean closed = false;
+
+  /**
+   * @param path the pty device, e.g. /dev/pts/3
+   * @throws IOException if the pty cannot be opened
+   */
+  public PtyTransport(String path) throws IOException {
+    this.path = path;
+    this.input = new FileInputStream(path);
+    try {
+      this.output = new FileOutputStream(path);
+    } catch (IOException e) {
+      input.close();
+      throw e;
+    }
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  @Override
+  public void setParameters(int baudRate, int dataBits, int stopBits, int parity) throws IOException {
+    checkOpen();
+  }
+
+  @Override
+  public void setDTR(boolean value) throws IOException {
+    checkOpen();
+  }
+
+  @Override
+  public void setRTS(boolean value) throws IOException {
+    checkOpen();
+  }
+
+  @Override
+  public void setFlowControl(UsbSerialPort.FlowControl flowControl) throws IOException {
+    checkOpen();
+  }
+
+  @Override
+  public int read(byte[] dest, int timeoutMillis) throws IOException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    // a blocking read could not be interrupted by close, so wait for bytes before reading
+    while (true) {
+      checkOpen();
+      int available = input.available();
+      if (available > 0) {
+        return input.read(dest, 0, Math.min(available, dest.length));
+      }
+      if (timeoutMillis > 0 && System.nanoTime() >= deadline) {
+        return 0;
+      }
+      try {
+        TimeUnit.NANOSECONDS.sleep(POLL_NANOS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted.");
+      }
+    }
+  }
+
+  @Override
+  public void write(byte[] src, int length, int timeoutMillis) throws IOException {
+    checkOpen();
+    output.write(src, 0, length);
+  }
+
+  private void checkOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Connection closed");
+    }
+  }
+
+  @Override
+  public int getReadPacketSize() {
+    return 0;
+  }
+
+  @Override
+  public int getWritePacketSize() {
+    return 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    try {
+      input.close();
+    } finally {
+      output.close();
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package org.apache.cordova.plugins.serial;
+
+import java.util.Base64;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Callback keeping the results it receives, to be taken in order by the test or benchmark
+ */
+public class RecordingCallback extends CallbackContext {
+
+  private final BlockingQueue<PluginResult> results = new LinkedBlockingQueue<>();
+
+  public RecordingCallback() {
+    super("RecordingCallback");
+  }
+
+  @Override
+  protected void onResult(PluginResult pluginResult) {
+    results.add(pluginResult);
+  }
+
+  /**
+   * @param timeoutMillis the longest wait
+   * @return the next result
+   * @throws TimeoutException if none arrived within timeoutMillis
+   */
+  public PluginResult next(long timeoutMillis) throws InterruptedException, TimeoutException {
+    PluginResult result = results.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    if (result == null) {
+      throw new TimeoutException("No result within " + timeoutMillis + " ms.");
+    }
+    return result;
+  }
+
+  /**
+   * @return the next result, or null if there is none yet
+   */
+  public PluginResult poll() {
+    return results.poll();
+  }
+
+  public int size() {
+    return results.size();
+  }
+
+  public static boolean isOk(PluginResult result) {
+    return result.getStatus() == PluginResult.Status.OK.ordinal();
+  }
+
+  /**
+   * @return the bytes of an ArrayBuffer result, or of the first part of a multipart one
+   */
+  public static byte[] data(PluginResult result) {
+    if (result.getMessageType() == PluginResult.MESSAGE_TYPE_MULTIPART) {
+      result = result.getMultipartMessage(0);
+    }
+    return Base64.getDecoder().decode(result.getMessage());
+  }
+
+  /**
+   * @return the JSON object of a result
+   */
+  public static JSONObject json(PluginResult result) throws JSONException {
+    return new JSONObject(result.getMessage());
+  }
+}
@@ -0,0 +1,208 @@
+package org.apache.cordova.plugins.serial;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.cordova.PluginResult;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The commands of a device run one at a time, in the order each caller issued them, while the
+ * devices do not wait for one another.
+ */
+class LaneOrderStressTest {
+
+  private static final int TIMEOUT_SECONDS = 30;
+
+  private final PluginHarness harness = new PluginHarness();
+
+  @AfterEach
+  void tearDown() throws Exception {
+    harness.close();
+  }
+
+  /**
+   * Start callers threads running caller, released together
+   */
+  private static void runConcurrently(int callers, final Caller caller) throws InterruptedException {
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int c = 0; c < callers; c++) {
+      final int index = c;
+      Thread thread = new Thread(
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              start.await();
+              caller.run(index);
+            } catch (Exception e) {
+              throw new RuntimeException(e);
+            }
+          }
+        }
+      );
+      threads.add(thread);
+      thread.start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+      assertFalse(thread.isAlive());
+    }
+  }
+
+  interface Caller {
+    void run(int index) throws Exception;
+  }
+
+  @Test
+  void laneRunsTheCommandsOfEachCallerInOrderOneAtATime() throws Exception {
+    final DeviceConnection deviceConnection = new DeviceConnection(-2);
+    final int callers = 8;
+    final int commandsPerCaller = 5000;
+    final List<int[]> ran = Collections.synchronizedList(new ArrayList<int[]>());
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger overlaps = new AtomicInteger();
+    final CountDownLatch done = new CountDownLatch(callers * commandsPerCaller);
+    runConcurrently(
+      callers,
+      new Caller() {
+        @Override
+        public void run(final int caller) {
+          for (int i = 0; i < commandsPerCaller; i++) {
+            final int seq = i;
+            deviceConnection.execute(
+              new Runnable() {
+                @Override
+                public void run() {
+                  if (running.incrementAndGet() > 1) {
+                    overlaps.incrementAndGet();
+                  }
+                  ran.add(new int[] { caller, seq });
+                  running.decrementAndGet();
+                  done.countDown();
+                }
+              }
+            );
+          }
+        }
+      }
+    );
+    assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+    assertEquals(0, overlaps.get());
+    int[] next = new int[callers];
+    synchronized (ran) {
+      for (int[] command : ran) {
+        assertEquals(next[command[0]]++, command[1], "caller " + command[0]);
+      }
+    }
+    for (int caller = 0; caller < callers; caller++) {
+      assertEquals(commandsPerCaller, next[caller]);
+    }
+  }
+
+  @Test
+  void aBusyLaneDoesNotHoldUpTheOthers() throws Exception {
+    DeviceConnection busy = new DeviceConnection(-2);
+    DeviceConnection other = new DeviceConnection(-3);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch otherRan = new CountDownLatch(1);
+    busy.execute(
+      new Runnable() {
+        @Override
+        public void run() {
+          try {
+            release.await();
+          } catch (InterruptedException ignored) {}
+        }
+      }
+    );
+    other.execute(
+      new Runnable() {
+        @Override
+        public void run() {
+          otherRan.countDown();
+        }
+      }
+    );
+    try {
+      assertTrue(otherRan.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  void writesOfConcurrentCallersKeepEachCallerOrderPerDevice() throws Exception {
+    final int devices = 4;
+    final int callers = 6;
+    final int writesPerCaller = 300;
+    final LoopbackTransport[] transports = new LoopbackTransport[devices];
+    final int[] deviceIds = new int[devices];
+    for (int d = 0; d < devices; d++) {
+      transports[d] = new LoopbackTransport();
+      deviceIds[d] = harness.open(transports[d], new JSONObject());
+    }
+    final List<PluginResult> failures = Collections.synchronizedList(new ArrayList<PluginResult>());
+    final CountDownLatch done = new CountDownLatch(devices * callers * writesPerCaller);
+    runConcurrently(
+      callers,
+      new Caller() {
+        @Override
+        public void run(int caller) throws Exception {
+          for (int seq = 0; seq < writesPerCaller; seq++) {
+            for (int d = 0; d < devices; d++) {
+              JSONObject opts = new JSONObject().put("deviceId", deviceIds[d]).put("data", caller + ":" + seq + ";");
+              harness.execute(
+                "writeSerialByDeviceId",
+                opts,
+                new RecordingCallback() {
+                  @Override
+                  protected void onResult(PluginResult pluginResult) {
+                    if (!isOk(pluginResult)) {
+                      failures.add(pluginResult);
+                    }
+                    done.countDown();
+                  }
+                }
+              );
+            }
+          }
+        }
+      }
+    );
+    assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertTrue(failures.isEmpty());
+
+    for (int d = 0; d < devices; d++) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int len;
+      while ((len = transports[d].read(buffer, 50)) > 0) {
+        out.write(buffer, 0, len);
+      }
+      int[] next = new int[callers];
+      for (String write : new String(out.toByteArray(), StandardCharsets.UTF_8).split(";")) {
+        String[] parts = write.split(":");
+        int caller = Integer.parseInt(parts[0]);
+        assertEquals(next[caller]++, Integer.parseInt(parts[1]), "device " + deviceIds[d] + " caller " + caller);
+      }
+      for (int caller = 0; caller < callers; caller++) {
+        assertEquals(writesPerCaller, next[caller]);
+      }
+    }
+  }
+}
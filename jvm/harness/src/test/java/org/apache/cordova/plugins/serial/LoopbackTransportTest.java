@@ -0,0 +1,244 @@
+package org.apache.cordova.plugins.serial;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.apache.cordova.PluginResult;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Throughput, latency and fault handling of the plugin over {@link LoopbackTransport}, with its
+ * line rate simulation and fault injection hooks.
+ */
+class LoopbackTransportTest {
+
+  private static final long RESULT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+  private final PluginHarness harness = new PluginHarness();
+  private final LoopbackTransport transport = new LoopbackTransport();
+
+  @AfterEach
+  void tearDown() throws Exception {
+    harness.close();
+  }
+
+  private JSONObject open(JSONObject opts) throws Exception {
+    return new JSONObject().put("deviceId", harness.open(transport, opts));
+  }
+
+  private PluginResult call(String action, JSONObject opts) throws Exception {
+    RecordingCallback callback = new RecordingCallback();
+    harness.execute(action, opts, callback);
+    return callback.next(RESULT_TIMEOUT_MILLIS);
+  }
+
+  private PluginResult call(String action, JSONObject opts, byte[] data) throws Exception {
+    RecordingCallback callback = new RecordingCallback();
+    harness.execute(action, opts, data, callback);
+    return callback.next(RESULT_TIMEOUT_MILLIS);
+  }
+
+  private RecordingCallback registerReadCallback() throws Exception {
+    RecordingCallback readCallback = new RecordingCallback();
+    harness.execute("registerReadCallback", new JSONObject(), readCallback);
+    readCallback.next(RESULT_TIMEOUT_MILLIS);
+    return readCallback;
+  }
+
+  private JSONObject stats(JSONObject opts) throws Exception {
+    return RecordingCallback.json(call("getStats", opts));
+  }
+
+  @Test
+  void streamsAMegabyteWrittenInChunksInOrder() throws Exception {
+    RecordingCallback readCallback = registerReadCallback();
+    JSONObject opts = open(new JSONObject().put("streaming", true));
+    byte[] data = new byte[1 << 20];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (i * 31 + (i >> 12));
+    }
+    long start = System.nanoTime();
+    for (int offset = 0; offset < data.length; offset += 4096) {
+      assertTrue(RecordingCallback.isOk(call("writeSerialBinaryByDeviceId", opts, Arrays.copyOfRange(data, offset, offset + 4096))));
+    }
+    ByteArrayOutputStream received = new ByteArrayOutputStream();
+    while (received.size() < data.length) {
+      received.write(RecordingCallback.data(readCallback.next(RESULT_TIMEOUT_MILLIS)));
+    }
+    long nanos = System.nanoTime() - start;
+
+    assertArrayEquals(data, received.toByteArray());
+    JSONObject stats = stats(opts);
+    assertEquals(data.length, stats.getLong("bytesOut"));
+    assertEquals(data.length, stats.getLong("bytesIn"));
+    assertTrue(nanos < TimeUnit.SECONDS.toNanos(20), "1 MiB in " + nanos / 1000000 + " ms");
+  }
+
+  @Test
+  void writesTakeTheTimeOfTheLine() throws Exception {
+    transport.setSimulateLineRate(true);
+    JSONObject opts = open(new JSONObject().put("baudRate", 115200));
+    // 5760 bytes of 10 bits take 500 ms at 115200 baud
+    byte[] data = new byte[5760];
+    long start = System.nanoTime();
+    for (int offset = 0; offset < data.length; offset += 576) {
+      assertTrue(RecordingCallback.isOk(call("writeSerialBinaryByDeviceId", opts, Arrays.copyOfRange(data, offset, offset + 576))));
+    }
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertTrue(millis >= 450, "written in " + millis + " ms");
+    assertEquals(data.length, transport.available());
+  }
+
+  @Test
+  void deliversSmallChunksOfALowLatencySessionPromptly() throws Exception {
+    RecordingCallback readCallback = registerReadCallback();
+    JSONObject opts = open(new JSONObject().put("streaming", true).put("lowLatency", true));
+    int samples = 200;
+    long[] latencies = new long[samples];
+    for (int i = 0; i < samples; i++) {
+      long start = System.nanoTime();
+      transport.inject(new byte[] { (byte) i }, 1);
+      PluginResult result = readCallback.next(RESULT_TIMEOUT_MILLIS);
+      latencies[i] = System.nanoTime() - start;
+      assertArrayEquals(new byte[] { (byte) i }, RecordingCallback.data(result));
+      // the multipart result names the device
+      assertEquals(opts.getString("deviceId"), result.getMultipartMessage(1).getMessage());
+    }
+    Arrays.sort(latencies);
+    long p99Millis = TimeUnit.NANOSECONDS.toMillis(latencies[samples * 99 / 100]);
+
+    assertTrue(p99Millis < 100, "p99 " + p99Millis + " ms");
+    // a delivery is timed once the callback returned, after the result was taken
+    JSONObject stats = stats(opts);
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RESULT_TIMEOUT_MILLIS);
+    while (stats.getJSONObject("deliveryLatency").getLong("count") < samples && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+      stats = stats(opts);
+    }
+    assertEquals(samples, stats.getJSONObject("deliveryLatency").getLong("count"));
+    assertEquals(samples, stats.getLong("bytesIn"));
+  }
+
+  @Test
+  void transactsRoundTripWithTheirResponse() throws Exception {
+    JSONObject opts = open(new JSONObject());
+    for (int i = 0; i < 100; i++) {
+      String request = "PING " + i + "\r\n";
+      RecordingCallback callback = new RecordingCallback();
+      harness.execute("transact", new JSONObject(opts.toString()).put("terminator", "\r\n"), request.getBytes(StandardCharsets.UTF_8), callback);
+      PluginResult result = callback.next(RESULT_TIMEOUT_MILLIS);
+
+      assertTrue(RecordingCallback.isOk(result), result.getMessage());
+      assertEquals(request, new String(RecordingCallback.data(result), StandardCharsets.UTF_8));
+      JSONObject info = new JSONObject(result.getMultipartMessage(1).getMessage());
+      assertTrue(info.getBoolean("matched"));
+      assertFalse(info.getBoolean("timedOut"));
+    }
+  }
+
+  @Test
+  void leavesTheBytesPastTheMatchToTheNextRead() throws Exception {
+    JSONObject opts = open(new JSONObject());
+    PluginResult terminated = call("transact", new JSONObject(opts.toString()).put("terminator", "\r\n"), "A\r\nB\r\n".getBytes(StandardCharsets.UTF_8));
+    PluginResult patterned = call("transact", new JSONObject(opts.toString()).put("pattern", "B\\s+"), new byte[0]);
+    PluginResult counted = call("transact", new JSONObject(opts.toString()).put("expectBytes", 2), "CDE".getBytes(StandardCharsets.UTF_8));
+
+    assertEquals("A\r\n", new String(RecordingCallback.data(terminated), StandardCharsets.UTF_8));
+    assertEquals("B\r\n", new String(RecordingCallback.data(patterned), StandardCharsets.UTF_8));
+    assertEquals("CD", new String(RecordingCallback.data(counted), StandardCharsets.UTF_8));
+    assertEquals("E", new String(RecordingCallback.data(call("readSerialByDeviceId", opts)), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void aFailedReadIsReportedOnceAndCounted() throws Exception {
+    JSONObject opts = open(new JSONObject());
+    transport.failNextRead(new IOException("Injected read fault"));
+    PluginResult failed = call("readSerialByDeviceId", opts);
+
+    assertFalse(RecordingCallback.isOk(failed));
+    assertTrue(failed.getMessage().contains("Injected read fault"));
+    transport.inject(new byte[] { 1, 2, 3 }, 3);
+    assertArrayEquals(new byte[] { 1, 2, 3 }, RecordingCallback.data(call("readSerialByDeviceId", opts)));
+    assertEquals(1, stats(opts).getLong("errors"));
+  }
+
+  @Test
+  void aFailedWriteIsReportedOnceAndCounted() throws Exception {
+    JSONObject opts = open(new JSONObject());
+    transport.failNextWrite(new IOException("Injected write fault"));
+    PluginResult failed = call("writeSerialByDeviceId", new JSONObject(opts.toString()).put("data", "lost"));
+
+    assertFalse(RecordingCallback.isOk(failed));
+    assertTrue(failed.getMessage().contains("Error writing to port: Injected write fault"));
+    assertTrue(RecordingCallback.isOk(call("writeSerialByDeviceId", new JSONObject(opts.toString()).put("data", "sent"))));
+    assertArrayEquals("sent".getBytes(StandardCharsets.UTF_8), RecordingCallback.data(call("readSerialByDeviceId", opts)));
+    JSONObject stats = stats(opts);
+    assertEquals(1, stats.getLong("errors"));
+    assertEquals(0, stats.getLong("writeTimeouts"));
+  }
+
+  @Test
+  void aWriteTimeoutIsCountedApart() throws Exception {
+    JSONObject opts = open(new JSONObject());
+    transport.failNextWrite(new InterruptedIOException("Injected write timeout"));
+    PluginResult failed = call("writeSerialByDeviceId", new JSONObject(opts.toString()).put("data", "late"));
+
+    assertFalse(RecordingCallback.isOk(failed));
+    JSONObject stats = stats(opts);
+    assertEquals(1, stats.getLong("writeTimeouts"));
+    assertEquals(1, stats.getLong("errors"));
+  }
+
+  @Test
+  void aReadFaultStopsTheStreamingReaderAndIsCounted() throws Exception {
+    registerReadCallback();
+    JSONObject opts = open(new JSONObject().put("streaming", true));
+    transport.failNextRead(new IOException("Injected read fault"));
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RESULT_TIMEOUT_MILLIS);
+    while (stats(opts).getLong("errors") == 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+
+    assertEquals(1, stats(opts).getLong("errors"));
+  }
+
+  @Test
+  void aDisconnectedDeviceFailsEveryOperation() throws Exception {
+    JSONObject opts = open(new JSONObject());
+    transport.disconnect();
+
+    PluginResult write = call("writeSerialByDeviceId", new JSONObject(opts.toString()).put("data", "x"));
+    assertFalse(RecordingCallback.isOk(write));
+    assertTrue(write.getMessage().contains("Connection lost"));
+    PluginResult read = call("readSerialByDeviceId", opts);
+    assertFalse(RecordingCallback.isOk(read));
+    assertTrue(read.getMessage().contains("Connection lost"));
+    assertEquals(2, stats(opts).getLong("errors"));
+  }
+
+  @Test
+  void closingTheTransportEndsABlockedRead() throws Exception {
+    JSONObject opts = open(new JSONObject());
+    RecordingCallback callback = new RecordingCallback();
+    harness.execute("readSerialByDeviceId", new JSONObject(opts.toString()).put("timeout", 20000), callback);
+    Thread.sleep(100);
+    long start = System.nanoTime();
+    transport.close();
+    PluginResult result = callback.next(RESULT_TIMEOUT_MILLIS);
+
+    assertFalse(RecordingCallback.isOk(result));
+    assertTrue(result.getMessage().contains("Connection closed"));
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+  }
+}
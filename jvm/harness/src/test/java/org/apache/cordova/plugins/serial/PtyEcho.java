@@ -0,0 +1,65 @@
+package org.apache.cordova.plugins.serial;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pseudo-terminal whose other end echoes what it receives, playing a device with TX wired to
+ * RX. Made by a python3 child process, as a JDK cannot open a pty pair itself.
+ */
+class PtyEcho implements AutoCloseable {
+
+  // opens a raw pty pair, prints the path of the slave and echoes what it reads on the master
+  private static final String SCRIPT =
+    "import os, pty, sys, tty\n" +
+    "master, slave = pty.openpty()\n" +
+    "tty.setraw(slave)\n" +
+    "print(os.ttyname(slave), flush=True)\n" +
+    "while True:\n" +
+    "    data = os.read(master, 65536)\n" +
+    "    if not data:\n" +
+    "        break\n" +
+    "    os.write(master, data)\n";
+
+  private final Process process;
+  private final String path;
+
+  private PtyEcho(Process process, String path) {
+    this.process = process;
+    this.path = path;
+  }
+
+  /**
+   * @return the started echo, or null if python3 or pseudo-terminals are not available
+   */
+  static PtyEcho start() {
+    Process process;
+    try {
+      process = new ProcessBuilder("python3", "-c", SCRIPT).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    } catch (IOException e) {
+      return null;
+    }
+    try {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+      String path = reader.readLine();
+      if (path != null && path.startsWith("/dev/")) {
+        return new PtyEcho(process, path);
+      }
+    } catch (IOException ignored) {}
+    process.destroy();
+    return null;
+  }
+
+  String getPath() {
+    return path;
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    process.destroy();
+    process.waitFor(5, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,104 @@
+package org.apache.cordova.plugins.serial;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.apache.cordova.PluginResult;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Throughput, latency and failures of the plugin over {@link PtyTransport}, the other end of
+ * the pseudo-terminal echoing what it receives. Skipped where python3 or ptys are missing.
+ */
+class PtyTransportTest {
+
+  private static final long RESULT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+  private final PluginHarness harness = new PluginHarness();
+  private PtyEcho echo;
+  private PtyTransport transport;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    echo = PtyEcho.start();
+    assumeTrue(echo != null, "no python3 pseudo-terminal");
+    transport = new PtyTransport(echo.getPath());
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    harness.close();
+    if (echo != null) {
+      echo.close();
+    }
+  }
+
+  private PluginResult call(String action, JSONObject opts, byte[] data) throws Exception {
+    RecordingCallback callback = new RecordingCallback();
+    harness.execute(action, opts, data, callback);
+    return callback.next(RESULT_TIMEOUT_MILLIS);
+  }
+
+  @Test
+  void transactsThroughThePty() throws Exception {
+    JSONObject opts = new JSONObject().put("deviceId", harness.open(transport, new JSONObject()));
+    long[] latencies = new long[50];
+    for (int i = 0; i < latencies.length; i++) {
+      String request = "PING " + i + "\n";
+      long start = System.nanoTime();
+      PluginResult result = call("transact", new JSONObject(opts.toString()).put("terminator", "\n"), request.getBytes(StandardCharsets.UTF_8));
+      latencies[i] = System.nanoTime() - start;
+
+      assertTrue(RecordingCallback.isOk(result), result.getMessage());
+      assertEquals(request, new String(RecordingCallback.data(result), StandardCharsets.UTF_8));
+    }
+    Arrays.sort(latencies);
+    long p90Millis = TimeUnit.NANOSECONDS.toMillis(latencies[latencies.length * 9 / 10]);
+    assertTrue(p90Millis < 200, "p90 " + p90Millis + " ms");
+  }
+
+  @Test
+  void streamsWhatIsWrittenInOrder() throws Exception {
+    RecordingCallback readCallback = new RecordingCallback();
+    harness.execute("registerReadCallback", new JSONObject(), readCallback);
+    readCallback.next(RESULT_TIMEOUT_MILLIS);
+    JSONObject opts = new JSONObject().put("deviceId", harness.open(transport, new JSONObject().put("streaming", true)));
+    byte[] data = new byte[256 * 1024];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (i * 7 + (i >> 10));
+    }
+    for (int offset = 0; offset < data.length; offset += 1024) {
+      assertTrue(RecordingCallback.isOk(call("writeSerialBinaryByDeviceId", opts, Arrays.copyOfRange(data, offset, offset + 1024))));
+    }
+    ByteArrayOutputStream received = new ByteArrayOutputStream();
+    while (received.size() < data.length) {
+      received.write(RecordingCallback.data(readCallback.next(RESULT_TIMEOUT_MILLIS)));
+    }
+
+    assertArrayEquals(data, received.toByteArray());
+  }
+
+  @Test
+  void closingTheTransportEndsABlockedRead() throws Exception {
+    JSONObject opts = new JSONObject().put("deviceId", harness.open(transport, new JSONObject()));
+    RecordingCallback callback = new RecordingCallback();
+    harness.execute("readSerialByDeviceId", new JSONObject(opts.toString()).put("timeout", 20000), callback);
+    Thread.sleep(100);
+    long start = System.nanoTime();
+    transport.close();
+    PluginResult result = callback.next(RESULT_TIMEOUT_MILLIS);
+
+    assertFalse(RecordingCallback.isOk(result));
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+  }
+}
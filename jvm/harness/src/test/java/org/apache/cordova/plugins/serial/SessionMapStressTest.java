@@ -0,0 +1,167 @@
+package org.apache.cordova.plugins.serial;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * Devices opened and closed from many threads at once, while other callers list, write and
+ * close them: every open gets its own session, every close removes it and closes its transport.
+ */
+class SessionMapStressTest {
+
+  private static final int TIMEOUT_SECONDS = 30;
+
+  private final PluginHarness harness = new PluginHarness();
+
+  @AfterEach
+  void tearDown() throws Exception {
+    harness.close();
+  }
+
+  private PluginResult call(String action, JSONObject opts) throws Exception {
+    RecordingCallback callback = new RecordingCallback();
+    harness.execute(action, opts, callback);
+    return callback.next(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+  }
+
+  @Test
+  void concurrentOpensAndClosesLeaveNoSession() throws Exception {
+    final int openers = 8;
+    final int cycles = 200;
+    final Set<Integer> ids = Collections.synchronizedSet(new HashSet<Integer>());
+    final List<LoopbackTransport> transports = Collections.synchronizedList(new ArrayList<LoopbackTransport>());
+    final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(openers);
+    for (int o = 0; o < openers; o++) {
+      new Thread(
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              start.await();
+              for (int i = 0; i < cycles; i++) {
+                LoopbackTransport transport = new LoopbackTransport();
+                transports.add(transport);
+                int deviceId = harness.open(transport, new JSONObject());
+                assertTrue(ids.add(deviceId), "id " + deviceId + " given twice");
+                JSONObject opts = new JSONObject().put("deviceId", deviceId);
+                assertTrue(RecordingCallback.isOk(call("getStats", opts)));
+                // a second close may find the device gone, but must not fail otherwise
+                PluginResult closed = call("closeSerialByDeviceId", opts);
+                assertTrue(RecordingCallback.isOk(closed));
+                PluginResult again = call("closeSerialByDeviceId", opts);
+                assertTrue(RecordingCallback.isOk(again) || again.getMessage().contains("Device not found."));
+              }
+            } catch (Throwable e) {
+              errors.add(e);
+            } finally {
+              done.countDown();
+            }
+          }
+        }
+      )
+        .start();
+    }
+    // listing the sessions while they come and go
+    Thread lister = new Thread(
+      new Runnable() {
+        @Override
+        public void run() {
+          try {
+            while (done.getCount() > 0) {
+              assertTrue(RecordingCallback.isOk(call("getStats", new JSONObject())));
+            }
+          } catch (Throwable e) {
+            errors.add(e);
+          }
+        }
+      }
+    );
+    lister.start();
+    start.countDown();
+    assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    lister.join();
+
+    assertTrue(errors.isEmpty(), errors.toString());
+    assertEquals(openers * cycles, ids.size());
+    JSONArray sessions = new JSONArray(call("getStats", new JSONObject()).getMessage());
+    assertEquals(0, sessions.length());
+    for (final LoopbackTransport transport : transports) {
+      assertThrows(
+        IOException.class,
+        new Executable() {
+          @Override
+          public void execute() throws Throwable {
+            transport.read(new byte[1], 1);
+          }
+        }
+      );
+    }
+  }
+
+  @Test
+  void writesRacingACloseAreResolved() throws Exception {
+    final int devices = 50;
+    final int writes = 40;
+    final List<PluginResult> results = Collections.synchronizedList(new ArrayList<PluginResult>());
+    final CountDownLatch resolved = new CountDownLatch(devices * writes);
+    for (int d = 0; d < devices; d++) {
+      final JSONObject opts = new JSONObject().put("deviceId", harness.open(new LoopbackTransport(), new JSONObject()));
+      Thread writer = new Thread(
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              for (int i = 0; i < writes; i++) {
+                harness.execute(
+                  "writeSerialByDeviceId",
+                  new JSONObject(opts.toString()).put("data", "x"),
+                  new RecordingCallback() {
+                    @Override
+                    protected void onResult(PluginResult pluginResult) {
+                      results.add(pluginResult);
+                      resolved.countDown();
+                    }
+                  }
+                );
+              }
+            } catch (Exception e) {
+              throw new RuntimeException(e);
+            }
+          }
+        }
+      );
+      writer.start();
+      call("closeSerialByDeviceId", opts);
+      writer.join();
+    }
+    // every write is either written or rejected as closed, none is left pending
+    assertTrue(resolved.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertEquals(devices * writes, results.size());
+    for (PluginResult result : results) {
+      String message = result.getMessage();
+      assertTrue(
+        RecordingCallback.isOk(result) || message.contains("Cannot write to a closed port.") || message.contains("Device not found."),
+        message
+      );
+    }
+    assertEquals(0, new JSONArray(call("getStats", new JSONObject()).getMessage()).length());
+  }
+}
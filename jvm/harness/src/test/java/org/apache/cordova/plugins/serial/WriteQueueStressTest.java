@@ -0,0 +1,247 @@
+package org.apache.cordova.plugins.serial;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The writes of a {@link WriteQueue} go out in call order, small ones merged into one packet,
+ * and are resolved in that order, with many threads writing at once.
+ */
+class WriteQueueStressTest {
+
+  private static final int PACKET_SIZE = 64;
+  private static final int TIMEOUT_SECONDS = 30;
+
+  /**
+   * Loopback keeping the length of every transfer
+   */
+  static class TransferLoopback extends LoopbackTransport {
+
+    final List<Integer> transfers = Collections.synchronizedList(new ArrayList<Integer>());
+
+    TransferLoopback() {
+      super(PACKET_SIZE);
+    }
+
+    @Override
+    public void write(byte[] src, int length, int timeoutMillis) throws IOException {
+      transfers.add(length);
+      super.write(src, length, timeoutMillis);
+    }
+  }
+
+  /**
+   * Listener recording the order writes are resolved in
+   */
+  static class OrderListener implements WriteQueue.Listener {
+
+    final int writer;
+    final int seq;
+    final List<int[]> resolved;
+    final CountDownLatch done;
+
+    OrderListener(int writer, int seq, List<int[]> resolved, CountDownLatch done) {
+      this.writer = writer;
+      this.seq = seq;
+      this.resolved = resolved;
+      this.done = done;
+    }
+
+    @Override
+    public void onWritten() {
+      resolved.add(new int[] { writer, seq });
+      done.countDown();
+    }
+
+    @Override
+    public void onError(String message) {
+      done.countDown();
+    }
+  }
+
+  private final TransferLoopback transport = new TransferLoopback();
+  private final DeviceStats stats = new DeviceStats();
+  private WriteQueue queue;
+
+  @AfterEach
+  void tearDown() {
+    if (queue != null) {
+      queue.stop();
+    }
+    transport.close();
+  }
+
+  /**
+   * @return a write of writer, numbered seq, of 4 to 19 bytes: its length, the writer, the
+   *   number and filler
+   */
+  private static byte[] write(int writer, int seq) {
+    byte[] data = new byte[4 + (writer * 7 + seq) % 16];
+    data[0] = (byte) data.length;
+    data[1] = (byte) writer;
+    data[2] = (byte) (seq >> 8);
+    data[3] = (byte) seq;
+    for (int i = 4; i < data.length; i++) {
+      data[i] = (byte) seq;
+    }
+    return data;
+  }
+
+  private byte[] readAll(int length) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+    while (out.size() < length && System.nanoTime() < deadline) {
+      int len = transport.read(buffer, 100);
+      out.write(buffer, 0, len);
+    }
+    return out.toByteArray();
+  }
+
+  @Test
+  void mergesQueuedWritesInCallOrder() throws Exception {
+    // a slow line lets the writes pile up behind the first transfer
+    transport.setParameters(115200, 8, 1, 0);
+    transport.setSimulateLineRate(true);
+    queue = new WriteQueue(transport, 1, 1 << 20, stats);
+    List<int[]> resolved = Collections.synchronizedList(new ArrayList<int[]>());
+    int count = 400;
+    CountDownLatch done = new CountDownLatch(count);
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    for (int seq = 0; seq < count; seq++) {
+      byte[] data = write(0, seq);
+      expected.write(data);
+      queue.enqueue(data, new OrderListener(0, seq, resolved, done));
+    }
+    queue.start();
+    assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+    assertArrayEquals(expected.toByteArray(), readAll(expected.size()));
+    for (int seq = 0; seq < count; seq++) {
+      assertEquals(seq, resolved.get(seq)[1]);
+    }
+    assertTrue(transport.transfers.size() < count / 2, "merged into " + transport.transfers.size() + " transfers");
+    for (int length : transport.transfers) {
+      assertTrue(length <= PACKET_SIZE);
+    }
+    assertEquals(0, queue.getQueuedBytes());
+  }
+
+  @Test
+  void keepsTheOrderOfEachWriterUnderContention() throws Exception {
+    queue = new WriteQueue(transport, 1, 1 << 24, stats);
+    queue.start();
+    final int writers = 8;
+    final int writesPerWriter = 2000;
+    final List<int[]> resolved = Collections.synchronizedList(new ArrayList<int[]>());
+    final CountDownLatch done = new CountDownLatch(writers * writesPerWriter);
+    final CountDownLatch start = new CountDownLatch(1);
+    final int[] written = new int[writers];
+    List<Thread> threads = new ArrayList<>();
+    for (int w = 0; w < writers; w++) {
+      final int writer = w;
+      Thread thread = new Thread(
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              start.await();
+            } catch (InterruptedException e) {
+              return;
+            }
+            for (int seq = 0; seq < writesPerWriter; seq++) {
+              byte[] data = write(writer, seq);
+              written[writer] += data.length;
+              queue.enqueue(data, new OrderListener(writer, seq, resolved, done));
+            }
+          }
+        }
+      );
+      threads.add(thread);
+      thread.start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+    int total = 0;
+    for (int length : written) {
+      total += length;
+    }
+    byte[] stream = readAll(total);
+    assertEquals(total, stream.length);
+    // every write arrives whole, after the previous one of its writer
+    int[] next = new int[writers];
+    int offset = 0;
+    while (offset < stream.length) {
+      int length = stream[offset];
+      int writer = stream[offset + 1];
+      int seq = ((stream[offset + 2] & 0xFF) << 8) | (stream[offset + 3] & 0xFF);
+      assertEquals(next[writer]++, seq, "writer " + writer);
+      assertArrayEquals(write(writer, seq), Arrays.copyOfRange(stream, offset, offset + length));
+      offset += length;
+    }
+    for (int writer = 0; writer < writers; writer++) {
+      assertEquals(writesPerWriter, next[writer]);
+    }
+    // resolved in the order they went out
+    int[] resolvedNext = new int[writers];
+    synchronized (resolved) {
+      assertEquals(writers * writesPerWriter, resolved.size());
+      for (int[] write : resolved) {
+        assertEquals(resolvedNext[write[0]]++, write[1]);
+      }
+    }
+    assertEquals(total, stats.bytesOut.get());
+    for (int length : transport.transfers) {
+      assertTrue(length <= PACKET_SIZE);
+    }
+  }
+
+  @Test
+  void cancelledWritesLeaveTheOthersInOrder() throws Exception {
+    queue = new WriteQueue(transport, 1, 1 << 20, stats);
+    List<int[]> resolved = Collections.synchronizedList(new ArrayList<int[]>());
+    int count = 100;
+    CountDownLatch done = new CountDownLatch(count - count / 3);
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    List<OrderListener> cancelled = new ArrayList<>();
+    for (int seq = 0; seq < count; seq++) {
+      byte[] data = write(0, seq);
+      OrderListener listener = new OrderListener(0, seq, resolved, done);
+      queue.enqueue(data, listener);
+      if (seq % 3 == 1) {
+        cancelled.add(listener);
+      } else {
+        expected.write(data);
+      }
+    }
+    for (OrderListener listener : cancelled) {
+      assertTrue(queue.cancel(listener));
+    }
+    assertEquals(expected.size(), queue.getQueuedBytes());
+    queue.start();
+    assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+    assertArrayEquals(expected.toByteArray(), readAll(expected.size()));
+    int previous = -1;
+    for (int[] write : resolved) {
+      assertTrue(write[1] > previous && write[1] % 3 != 1);
+      previous = write[1];
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package org.apache.cordova.plugins.serial;
+
+import android.hardware.usb.UsbDeviceConnection;
+import android.hardware.usb.UsbEndpoint;
+import android.hardware.usb.UsbRequest;
+import android.util.Log;
+import com.hoho.android.usbserial.driver.FtdiSerialDriver;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * High throughput reader of a USB session: keeps several bulk-IN {@link UsbRequest} queued on
+ * the read endpoint, so the device always has a transfer to fill while the previous ones are
+ * handed to the listener, instead of one synchronous transfer at a time. The buffers of the
+ * requests are queued again once their data was copied out, unless the gate is closed: they
+ * are then held until it opens, the device is not read meanwhile.
+ * <p>
+ * FTDI chips start every packet with two status bytes, they are removed here and their overrun
+ * flag is counted. The other supported chips send raw data.
+ */
+public class BulkInReader extends TransportReader {
+
+  // logging tag
+  private final String TAG = BulkInReader.class.getSimpleName();
+  // FTDI line status bit set when the chip FIFO overflowed
+  private static final int FTDI_OVERRUN = 0x02;
+  private static final int FTDI_HEADER = 2;
+  // longest wait for the reader thread to end, and for a closed gate to open
+  private static final int STOP_WAIT_MILLIS = 500;
+
+  private final UsbDeviceConnection connection;
+  private final UsbEndpoint endpoint;
+  private final int requestCount;
+  private final int bufferSize;
+  private final boolean ftdi;
+  private final List<UsbRequest> requests = new ArrayList<>();
+
+  /**
+   * @param transport the open USB transport
+   * @param readBuffers the read buffers of the device, their size is the size of one request
+   * @param requestCount the number of requests kept queued
+   * @param stats counts the transfers and overruns
+   * @param deviceId used to name the reader thread
+   * @param listener receives the chunks read
+   */
+  public BulkInReader(
+    UsbSerialTransport transport,
+    ReadBufferPool readBuffers,
+    int requestCount,
+    DeviceStats stats,
+    int deviceId,
+    Listener listener
+  ) {
+    super(transport, readBuffers, stats, deviceId, listener);
+    this.connection = transport.getConnection();
+    this.endpoint = transport.getPort().getReadEndpoint();
+    this.requestCount = requestCount;
+    this.bufferSize = readBuffers.getBufferSize();
+    this.ftdi = transport.getPort() instanceof FtdiSerialDriver.FtdiSerialPort;
+  }
+
+  /**
+   * Stop reading, the queued requests are cancelled, returns at once
+   */
+  @Override
+  public void stop() {
+    running = false;
+    synchronized (requests) {
+      for (UsbRequest request : requests) {
+        request.cancel();
+      }
+    }
+  }
+
+  /**
+   * Completions are returned to any waiter of the connection, so the next reader of the same
+   * connection must not start before this one is gone
+   */
+  @Override
+  public void awaitStop() {
+    if (Thread.currentThread() != thread) {
+      try {
+        thread.join(STOP_WAIT_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public void run() {
+    byte[] chunk = new byte[bufferSize];
+    try {
+      synchronized (requests) {
+        for (int i = 0; i < requestCount && running; i++) {
+          UsbRequest request = new UsbRequest();
+          if (!request.initialize(connection, endpoint)) {
+            throw new IllegalStateException("Cannot initialize a read request.");
+          }
+          request.setClientData(ByteBuffer.allocate(bufferSize));
+          requests.add(request);
+          if (!request.queue((ByteBuffer) request.getClientData())) {
+            throw new IllegalStateException("Cannot queue a read request.");
+          }
+        }
+      }
+      // requests not queued again while the gate was closed
+      ArrayDeque<UsbRequest> held = new ArrayDeque<>();
+      long start = System.nanoTime();
+      while (running) {
+        if (!held.isEmpty()) {
+          // with nothing queued, requestWait would never return: wait for the gate instead
+          boolean idle = held.size() == requests.size();
+          if (gate.awaitRoom(idle ? STOP_WAIT_MILLIS : 0)) {
+            while (!held.isEmpty()) {
+              UsbRequest request = held.pollFirst();
+              if (!request.queue((ByteBuffer) request.getClientData())) {
+                throw new IllegalStateException("Cannot queue a read request.");
+              }
+            }
+            start = System.nanoTime();
+          } else if (idle) {
+            continue;
+          }
+        }
+        // returns the requests in completion order, null once the connection is closed
+        UsbRequest request = connection.requestWait();
+        if (request == null) {
+          throw new IllegalStateException("Connection closed");
+        }
+        if (!running) {
+          break;
+        }
+        ByteBuffer buffer = (ByteBuffer) request.getClientData();
+        if (buffer == null) {
+          // a request of another reader of this connection
+          continue;
+        }
+        int len = copyData(buffer.array(), buffer.position(), chunk);
+        stats.onRead(len, System.nanoTime() - start);
+        buffer.clear();
+        if (gate != null && !gate.awaitRoom(0)) {
+          held.addLast(request);
+        } else if (!request.queue(buffer)) {
+          throw new IllegalStateException("Cannot queue a read request.");
+        }
+        start = System.nanoTime();
+        if (len > 0) {
+          listener.onNewData(Arrays.copyOf(chunk, len));
+        }
+      }
+    } catch (Exception e) {
+      if (running) {
+        stats.errors.incrementAndGet();
+      }
+      running = false;
+      listener.onRunError(e);
+    } finally {
+      synchronized (requests) {
+        for (UsbRequest request : requests) {
+          request.close();
+        }
+        requests.clear();
+      }
+    }
+    Log.d(TAG, "Reader stopped: " + thread.getName());
+  }
+
+  /**
+   * Copy the serial data of a completed transfer, without the FTDI status bytes
+   * @return the number of bytes copied into chunk
+   */
+  private int copyData(byte[] data, int length, byte[] chunk) {
+    if (!ftdi) {
+      System.arraycopy(data, 0, chunk, 0, length);
+      return length;
+    }
+    int packetSize = endpoint.getMaxPacketSize();
+    int count = 0;
+    for (int offset = 0; offset < length; offset += packetSize) {
+      int end = Math.min(offset + packetSize, length);
+      if (end - offset < FTDI_HEADER) {
+        break;
+      }
+      if ((data[offset + 1] & FTDI_OVERRUN) != 0) {
+        stats.overruns.incrementAndGet();
+      }
+      System.arraycopy(data, offset + FTDI_HEADER, chunk, count, end - offset - FTDI_HEADER);
+      count += end - offset - FTDI_HEADER;
+    }
+    return count;
+  }
+}
@@ -0,0 +1,170 @@
+package org.apache.cordova.plugins.serial;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only capture of the bytes of one device to memory-mapped files, written by the
+ * reader and writer threads so the data never goes through javascript. A file is rotated
+ * once it reaches maxFileBytes. All numbers are big endian.
+ * <p>
+ * File header: magic "SCAP", version (2 bytes), deviceId (4 bytes), wall clock time of the
+ * capture start in milliseconds (8 bytes), {@link System#nanoTime()} at the capture start
+ * (8 bytes).
+ * <p>
+ * Record: {@link System#nanoTime()} when the bytes were read or written (8 bytes), direction
+ * (1 byte, {@link #IN} or {@link #OUT}), length (4 bytes), then the bytes.
+ */
+public class CaptureWriter {
+
+  public static final byte IN = 0;
+  public static final byte OUT = 1;
+
+  private static final int VERSION = 1;
+  private static final int FILE_HEADER_BYTES = 26;
+  private static final int RECORD_HEADER_BYTES = 13;
+  private static final int MIN_FILE_BYTES = 4096;
+
+  private final File directory;
+  private final int deviceId;
+  private final int portIndex;
+  private final long maxFileBytes;
+  private final int maxFiles;
+  private final boolean outgoing;
+  private final long startMillis = System.currentTimeMillis();
+  private final long startNanos = System.nanoTime();
+  private final List<File> files = new ArrayList<>();
+  private RandomAccessFile file = null;
+  private MappedByteBuffer buffer = null;
+  private boolean closed = false;
+  // index of the next file, in its name
+  private int fileIndex = 0;
+  // counters
+  private long records = 0;
+  private long bytes = 0;
+
+  /**
+   * @param directory where the capture files are created
+   * @param deviceId the captured device
+   * @param portIndex the captured port of the device, in the file names of the ports after the first
+   * @param maxFileBytes size of a file before rotation
+   * @param maxFiles number of files kept, the oldest ones are deleted, 0 keeps all of them
+   * @param outgoing whether the bytes written to the device are captured too
+   * @throws IOException if the first file cannot be created
+   */
+  public CaptureWriter(File directory, int deviceId, int portIndex, long maxFileBytes, int maxFiles, boolean outgoing)
+    throws IOException {
+    this.directory = directory;
+    this.deviceId = deviceId;
+    this.portIndex = portIndex;
+    this.maxFileBytes = Math.max(maxFileBytes, MIN_FILE_BYTES);
+    this.maxFiles = maxFiles;
+    this.outgoing = outgoing;
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create capture directory " + directory);
+    }
+    rotate();
+  }
+
+  public boolean isOutgoing() {
+    return outgoing;
+  }
+
+  /**
+   * Append a record, split over several records if it does not fit in one file
+   * @param direction {@link #IN} or {@link #OUT}
+   * @param data the bytes read or written
+   * @param offset first byte to capture
+   * @param length number of bytes to capture
+   */
+  public synchronized void record(byte direction, byte[] data, int offset, int length) {
+    if (closed || (direction == OUT && !outgoing)) {
+      return;
+    }
+    long nanos = System.nanoTime();
+    try {
+      int maxPayload = (int) Math.min(maxFileBytes - FILE_HEADER_BYTES - RECORD_HEADER_BYTES, Integer.MAX_VALUE);
+      do {
+        int count = Math.min(length, maxPayload);
+        if (buffer.remaining() < RECORD_HEADER_BYTES + count) {
+          rotate();
+        }
+        buffer.putLong(nanos);
+        buffer.put(direction);
+        buffer.putInt(count);
+        buffer.put(data, offset, count);
+        records++;
+        bytes += count;
+        offset += count;
+        length -= count;
+      } while (length > 0);
+    } catch (IOException e) {
+      // the capture stops, the session goes on
+      closed = true;
+      closeFile();
+    }
+  }
+
+  private void rotate() throws IOException {
+    closeFile();
+    String device = portIndex > 0 ? deviceId + "." + portIndex : String.valueOf(deviceId);
+    File next = new File(directory, "device-" + device + "-" + startMillis + "-" + fileIndex++ + ".cap");
+    file = new RandomAccessFile(next, "rw");
+    buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, maxFileBytes);
+    buffer.order(ByteOrder.BIG_ENDIAN);
+    buffer.put(new byte[] { 'S', 'C', 'A', 'P' });
+    buffer.putShort((short) VERSION);
+    buffer.putInt(deviceId);
+    buffer.putLong(startMillis);
+    buffer.putLong(startNanos);
+    files.add(next);
+    if (maxFiles > 0 && files.size() > maxFiles) {
+      files.remove(0).delete();
+    }
+  }
+
+  /**
+   * Flush the current file and cut it to the bytes written
+   */
+  private void closeFile() {
+    if (file == null) {
+      return;
+    }
+    try {
+      buffer.force();
+      file.getChannel().truncate(buffer.position());
+    } catch (IOException ignored) {} finally {
+      try {
+        file.close();
+      } catch (IOException ignored) {}
+      file = null;
+      buffer = null;
+    }
+  }
+
+  /**
+   * Stop the capture, records added later are ignored
+   */
+  public synchronized void close() {
+    closed = true;
+    closeFile();
+  }
+
+  public synchronized List<File> getFiles() {
+    return new ArrayList<>(files);
+  }
+
+  public synchronized long getRecords() {
+    return records;
+  }
+
+  public synchronized long getBytes() {
+    return bytes;
+  }
+}
@@ -1,45 +1,759 @@
 package org.apache.cordova.plugins.serial;
 
-import android.hardware.usb.UsbConstants;
 import android.hardware.usb.UsbDevice;
 import android.hardware.usb.UsbDeviceConnection;
-import android.hardware.usb.UsbEndpoint;
-import android.hardware.usb.UsbInterface;
 import android.hardware.usb.UsbManager;
+import android.os.Build;
+import com.hoho.android.usbserial.driver.UsbSerialDriver;
+import com.hoho.android.usbserial.driver.UsbSerialPort;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.cordova.CallbackContext;
+import org.json.JSONException;
+import org.json.JSONObject;
 
+/**
+ * Serial session of one port of a USB device: the driver found for the device, the transport of
+ * the opened port and the line parameters used to open it, so several devices, and the ports of
+ * a multi-port device, can stay open at once.
+ * The methods changing the state of the session are synchronized, and the commands of the
+ * device run one at a time on its own lane, so a slow device does not hold up the others.
+ */
 public class DeviceConnection {
 
-  private UsbDevice device = null;
-  private UsbDeviceConnection connection = null;
+  // Default timeout of the reads, the read buffers are sized for it
+  private static final int READ_TIMEOUT_MILLIS = 200;
+  // Profile of the lowLatency option: read timeout and FTDI latency timer
+  private static final int LOW_LATENCY_READ_TIMEOUT_MILLIS = 5;
+  private static final int LOW_LATENCY_TIMER_MILLIS = 1;
+  // Default number of bytes the write queue accepts
+  private static final int WRITE_QUEUE_LIMIT = 65536;
+  // Idle time after which the thread of a lane ends, a new one is started by the next command
+  private static final long LANE_KEEP_ALIVE_SECONDS = 30;
+  // Default number of tries to reopen the session of a reattached device
+  private static final int RECONNECT_ATTEMPTS = 5;
+
+  private volatile UsbDevice device = null;
+  // Id of a virtual device, which has no UsbDevice
+  private final int virtualDeviceId;
+  // Index of the port of the device in the ports of its driver
+  private final int portIndex;
+  // The driver that handles this device
+  private volatile UsbSerialDriver driver = null;
+  // The transport of the open port, null while the session is closed
+  private volatile SerialTransport transport = null;
+  // Line parameters
+  private int baudRate;
+  private int dataBits = UsbSerialPort.DATABITS_8;
+  private int stopBits = UsbSerialPort.STOPBITS_1;
+  private int parity = UsbSerialPort.PARITY_NONE;
+  private boolean setDTR;
+  private boolean setRTS;
+  private UsbSerialPort.FlowControl flowControl = UsbSerialPort.FlowControl.NONE;
+  private boolean sleepOnPause = true;
+  // Round-trip time before throughput: short reads, no coalescing, chip latency knobs
+  private boolean lowLatency = false;
+  private int readTimeoutMillis = READ_TIMEOUT_MILLIS;
+  // FTDI latency timer read back after open, -1 when not set or not supported
+  private int latencyTimer = -1;
+  // Push incoming data to the read callback instead of waiting for read calls
+  private boolean streaming = false;
+  // Reader of this device, running while the session is open and streaming
+  private TransportReader reader = null;
+  // stopped reader of the open transport, waited for before the next one starts
+  private TransportReader stoppedReader = null;
+  // Bounded buffer between the reader and the delivery, 0 delivers on the reader thread
+  private int receiveBufferBytes = 0;
+  private int lowWatermark = 0;
+  private int overflowPolicy = ReceiveBuffer.POLICY_BLOCK;
+  private ReceiveBuffer receiveBuffer = null;
+  // Reading paused by the app, kept across reader restarts
+  private volatile boolean readingPaused = false;
+  // Bulk-IN requests kept queued by the reader of a USB session, 0 reads one transfer at a time
+  private int readRequests = 0;
+  // Batching of the streamed data: flush threshold in bytes and time window, 0 disables each
+  private int coalesceBytes = 0;
+  private int coalesceMillis = 0;
+  private volatile ReceiveCoalescer coalescer = null;
+  // Splits the received data into frames, null when the stream is not framed
+  private volatile FrameDecoder frameDecoder = null;
+  // Frames decoded by the polling reads and not returned yet, guarded by readLock
+  private final ArrayDeque<byte[]> polledFrames = new ArrayDeque<>();
+  private final FrameDecoder.Sink pollingSink = new FrameDecoder.Sink() {
+    @Override
+    public void onFrame(byte[] frame) {
+      polledFrames.addLast(frame);
+    }
+  };
+  // Reduces the frames before they are sent, null to send every frame
+  private volatile FrameReducer frameReducer = null;
+  // Ordered writes, running while the session is open
+  private volatile WriteQueue writeQueue = null;
+  private int writeQueueLimit = WRITE_QUEUE_LIMIT;
+  // Held by every read so a transaction gets the whole response
+  private final Object readLock = new Object();
+  // Bytes read past the end of a bulk read, handed out first by the next read, guarded by readLock
+  private byte[] unread = null;
+  private int unreadOffset = 0;
+  // Buffers of the polling reads, sized for the read endpoint and the baud rate when opened
+  private volatile ReadBufferPool readBuffers = new ReadBufferPool(ReadBufferPool.DEFAULT_SIZE);
+  // I/O counters, kept across close and reopen until reset
+  private final DeviceStats stats = new DeviceStats();
+  // true when the port has been closed by onPause and has to be reopened by onResume
+  private boolean suspended = false;
+  // Runs the commands of this device in call order, on a single thread
+  private final ExecutorService lane;
+  // Captures the bytes of this device to files, kept across close and reopen, null when not capturing
+  private volatile CaptureWriter capture = null;
+  // Writes waiting on the lane for the session to open, the next writes queue behind them
+  private int deferredWrites = 0;
+  // Identity of the device, used to find it again once reattached under a new device id
+  private int vendorId;
+  private int productId;
+  private String serialNumber;
+  // Keep the session of a detached device and reopen it when the device is reattached
+  private boolean autoReconnect = false;
+  private int reconnectAttempts = RECONNECT_ATTEMPTS;
+  // set on detach: whether the session was open, and when
+  private boolean reopenOnAttach = false;
+  private long detachedNanos = 0;
 
   public DeviceConnection(UsbDevice device) {
-    this.device = device;
-    // this.connection = connection;
+    this(device, 0);
+  }
+
+  /**
+   * Session of one port of a multi-port device, sharing the driver of the device
+   * @param device the device
+   * @param portIndex the index of the port in the ports of the driver
+   */
+  public DeviceConnection(UsbDevice device, int portIndex) {
+    this(device, -1, portIndex);
+  }
+
+  /**
+   * Session of a virtual device, opened over a transport with {@link #open(SerialTransport)}
+   * @param virtualDeviceId the id of the device, negative so it cannot clash with a USB device
+   */
+  public DeviceConnection(int virtualDeviceId) {
+    this(null, virtualDeviceId, 0);
+  }
+
+  private DeviceConnection(UsbDevice device, int virtualDeviceId, int portIndex) {
+    setDevice(device);
+    this.virtualDeviceId = virtualDeviceId;
+    this.portIndex = portIndex;
+    final String name = "SerialLane-" + getDeviceId() + (portIndex > 0 ? "." + portIndex : "");
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+      1,
+      1,
+      LANE_KEEP_ALIVE_SECONDS,
+      TimeUnit.SECONDS,
+      new LinkedBlockingQueue<Runnable>(),
+      new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          return new Thread(runnable, name);
+        }
+      }
+    );
+    executor.allowCoreThreadTimeOut(true);
+    this.lane = executor;
+  }
+
+  /**
+   * Run a command after the commands already queued for this device
+   * @param command the command
+   */
+  public void execute(Runnable command) {
+    lane.execute(command);
   }
 
   public UsbDevice getDevice() {
     return device;
   }
 
-  public void close() {
-    if (connection != null) {
-      connection.close();
+  public int getDeviceId() {
+    return device != null ? device.getDeviceId() : virtualDeviceId;
+  }
+
+  public boolean isVirtual() {
+    return device == null;
+  }
+
+  public int getPortIndex() {
+    return portIndex;
+  }
+
+  /**
+   * @return the key of this session in the sessions of the plugin
+   */
+  public long getSessionKey() {
+    return sessionKey(getDeviceId(), portIndex);
+  }
+
+  /**
+   * @param deviceId the id of a device
+   * @param portIndex the index of one of its ports
+   * @return the key of the session of the port
+   */
+  public static long sessionKey(int deviceId, int portIndex) {
+    return ((long) deviceId << 32) | (portIndex & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Read the line parameters from the open options, or their default values
+   * @param opts a {@link JSONObject} containing the connection parameters
+   * @param defaultBaudRate the baud rate to use when opts has none
+   * @throws JSONException if an option has the wrong type
+   */
+  public synchronized void setParameters(JSONObject opts, int defaultBaudRate) throws JSONException {
+    baudRate = opts.has("baudRate") ? opts.getInt("baudRate") : defaultBaudRate;
+    dataBits = opts.has("dataBits") ? opts.getInt("dataBits") : UsbSerialPort.DATABITS_8;
+    stopBits = opts.has("stopBits") ? opts.getInt("stopBits") : UsbSerialPort.STOPBITS_1;
+    parity = opts.has("parity") ? opts.getInt("parity") : UsbSerialPort.PARITY_NONE;
+    setDTR = opts.has("dtr") && opts.getBoolean("dtr");
+    setRTS = opts.has("rts") && opts.getBoolean("rts");
+    flowControl = parseFlowControl(opts.optString("flowControl", "none"));
+    // Sleep On Pause defaults to true
+    sleepOnPause = !opts.has("sleepOnPause") || opts.getBoolean("sleepOnPause");
+    // Streaming defaults to false, data is then read with read calls
+    streaming = opts.has("streaming") && opts.getBoolean("streaming");
+    lowLatency = opts.has("lowLatency") && opts.getBoolean("lowLatency");
+    readTimeoutMillis = lowLatency ? LOW_LATENCY_READ_TIMEOUT_MILLIS : READ_TIMEOUT_MILLIS;
+    // a low latency session sends every chunk as it arrives
+    coalesceBytes = !lowLatency && opts.has("coalesceBytes") ? opts.getInt("coalesceBytes") : 0;
+    coalesceMillis = !lowLatency && opts.has("coalesceMillis") ? opts.getInt("coalesceMillis") : 0;
+    frameDecoder = opts.has("framing") ? new FrameDecoder(opts.getJSONObject("framing")) : null;
+    frameReducer = opts.has("reduce") ? new FrameReducer(opts.getJSONObject("reduce")) : null;
+    if (frameReducer != null && frameDecoder == null) {
+      throw new JSONException("Reducing frames needs framing.");
     }
+    if (frameReducer != null && !streaming) {
+      throw new JSONException("Reducing frames needs streaming.");
+    }
+    writeQueueLimit = opts.has("writeQueueLimit") ? opts.getInt("writeQueueLimit") : WRITE_QUEUE_LIMIT;
+    readRequests = opts.has("readRequests") ? opts.getInt("readRequests") : 0;
+    receiveBufferBytes = opts.has("receiveBufferBytes") ? opts.getInt("receiveBufferBytes") : 0;
+    lowWatermark = opts.has("lowWatermark") ? opts.getInt("lowWatermark") : receiveBufferBytes / 2;
+    overflowPolicy = ReceiveBuffer.parsePolicy(opts.optString("overflowPolicy", "block"));
+    autoReconnect = opts.has("autoReconnect") && opts.getBoolean("autoReconnect");
+    reconnectAttempts = opts.has("reconnectAttempts") ? opts.getInt("reconnectAttempts") : RECONNECT_ATTEMPTS;
+  }
+
+  private static UsbSerialPort.FlowControl parseFlowControl(String name) throws JSONException {
+    switch (name) {
+      case "none":
+        return UsbSerialPort.FlowControl.NONE;
+      case "rtsCts":
+        return UsbSerialPort.FlowControl.RTS_CTS;
+      case "dtrDsr":
+        return UsbSerialPort.FlowControl.DTR_DSR;
+      case "xonXoff":
+        return UsbSerialPort.FlowControl.XON_XOFF;
+      case "xonXoffInline":
+        return UsbSerialPort.FlowControl.XON_XOFF_INLINE;
+      default:
+        throw new JSONException("Unknown flow control: " + name);
+    }
+  }
+
+  /**
+   * Open the device and the port of this session with the current line parameters. Every port
+   * of a multi-port device opens a connection of its own and claims its own interface.
+   * @param manager the {@link UsbManager} used to open the device
+   * @return false if the device could not be opened
+   * @throws IOException if the port cannot be opened or configured
+   */
+  public synchronized boolean open(UsbManager manager) throws IOException {
+    if (driver == null) {
+      return false;
+    }
+    UsbDeviceConnection usbConnection = manager.openDevice(device);
+    if (usbConnection == null) {
+      return false;
+    }
+    if (portIndex >= driver.getPorts().size()) {
+      usbConnection.close();
+      throw new IOException("Device has no port " + portIndex + ".");
+    }
+    open(new UsbSerialTransport(driver.getPorts().get(portIndex), usbConnection));
+    return true;
+  }
+
+  /**
+   * Start the session over an open transport with the current line parameters
+   * @param serialTransport the transport, closed if it cannot be configured
+   * @throws IOException if the line cannot be configured
+   */
+  public synchronized void open(SerialTransport serialTransport) throws IOException {
+    try {
+      serialTransport.setParameters(baudRate, dataBits, stopBits, parity);
+      if (setDTR) serialTransport.setDTR(true);
+      if (setRTS) serialTransport.setRTS(true);
+      if (flowControl != UsbSerialPort.FlowControl.NONE) {
+        try {
+          serialTransport.setFlowControl(flowControl);
+        } catch (UnsupportedOperationException e) {
+          throw new IOException("Flow control not supported by this device: " + flowControl);
+        }
+      }
+      latencyTimer = -1;
+      if (lowLatency && serialTransport instanceof UsbSerialTransport) {
+        latencyTimer = ((UsbSerialTransport) serialTransport).setLatencyTimer(LOW_LATENCY_TIMER_MILLIS);
+      }
+    } catch (IOException e) {
+      try {
+        serialTransport.close();
+      } catch (IOException ignored) {}
+      throw e;
+    }
+    int bufferSize = ReadBufferPool.bufferSize(serialTransport.getReadPacketSize(), baudRate, readTimeoutMillis);
+    if (bufferSize != readBuffers.getBufferSize()) {
+      readBuffers = new ReadBufferPool(bufferSize);
+    }
+    writeQueue = new WriteQueue(serialTransport, getDeviceId(), writeQueueLimit, stats);
+    writeQueue.setCapture(capture);
+    writeQueue.start();
+    transport = serialTransport;
+    suspended = false;
+  }
+
+  /**
+   * Close the port and the device connection, the driver and line parameters are kept
+   */
+  public synchronized void close() {
+    reopenOnAttach = false;
+    stopIoManager();
+    if (writeQueue != null) {
+      writeQueue.stop();
+      writeQueue = null;
+    }
+    if (transport != null) {
+      try {
+        transport.close();
+      } catch (IOException ignored) {}
+      transport = null;
+    }
+    // the reads of the stopped reader end with the transport
+    stoppedReader = null;
+    // a frame cut by the close and unread bytes are dropped, taken once a blocked read saw the closed transport
+    synchronized (readLock) {
+      FrameDecoder decoder = frameDecoder;
+      if (decoder != null && !streaming) {
+        decoder.reset();
+        polledFrames.clear();
+      }
+      unread = null;
+    }
+  }
+
+  /**
+   * Close the session if it should sleep while the app is paused
+   */
+  public synchronized void suspend() {
+    // a virtual device could not be reopened
+    if (sleepOnPause && isOpen() && !isVirtual()) {
+      close();
+      suspended = true;
+    }
+  }
+
+  /**
+   * Reopen a session closed by {@link #suspend()}
+   * @param manager the {@link UsbManager} used to open the device
+   * @return true if the session was reopened
+   * @throws IOException if the port cannot be opened or configured
+   */
+  public synchronized boolean resume(UsbManager manager) throws IOException {
+    if (suspended) {
+      suspended = false;
+      return open(manager);
+    }
+    return false;
+  }
+
+  /**
+   * Close the session of a detached device. With autoReconnect the driver, line parameters,
+   * framing, capture and counters are kept for {@link #reattach(UsbDevice)}.
+   * @return true if the session waits for the device to be reattached
+   */
+  public synchronized boolean detach() {
+    // a session suspended by onPause, or detached again before it was reopened, is reopened too
+    boolean reopen = isOpen() || suspended || reopenOnAttach;
+    close();
+    suspended = false;
+    if (!autoReconnect || isVirtual()) {
+      stopCapture();
+      return false;
+    }
+    reopenOnAttach = reopen;
+    detachedNanos = System.nanoTime();
+    return true;
+  }
+
+  /**
+   * @param other an attached device
+   * @return true if other is the detached device of this session: same vendor and product
+   *   ids, and same serial number when both are readable
+   */
+  public boolean matches(UsbDevice other) {
+    if (other.getVendorId() != vendorId || other.getProductId() != productId) {
+      return false;
+    }
+    String otherSerialNumber = readSerialNumber(other);
+    return serialNumber == null || otherSerialNumber == null || serialNumber.equals(otherSerialNumber);
+  }
+
+  /**
+   * Bind the session of a detached device to the device once reattached, with a new driver
+   * instance of the same class
+   * @param reattached the device, with its new device id
+   * @throws IOException if the driver cannot be created
+   */
+  public synchronized void reattach(UsbDevice reattached) throws IOException {
+    if (driver != null) {
+      try {
+        driver = driver.getClass().getConstructor(UsbDevice.class).newInstance(reattached);
+      } catch (ReflectiveOperationException e) {
+        throw new IOException("Cannot create the driver of the reattached device: " + e.getMessage());
+      }
+    }
+    setDevice(reattached);
+  }
+
+  /**
+   * Reopen the session of a reattached device if it was open when detached
+   * @param manager the {@link UsbManager} used to open the device
+   * @return true if the session was reopened, false if it was closed when detached
+   * @throws IOException if the port cannot be opened or configured
+   */
+  public synchronized boolean reopen(UsbManager manager) throws IOException {
+    if (!reopenOnAttach || isOpen()) {
+      return false;
+    }
+    if (!open(manager)) {
+      throw new IOException("Cannot connect to the device!");
+    }
+    reopenOnAttach = false;
+    stats.onReconnect(System.nanoTime() - detachedNanos);
+    return true;
+  }
+
+  public long getDetachedNanos() {
+    return detachedNanos;
+  }
+
+  public int getReconnectAttempts() {
+    return reconnectAttempts;
+  }
+
+  private static String readSerialNumber(UsbDevice usbDevice) {
+    try {
+      return usbDevice.getSerialNumber();
+    } catch (SecurityException e) {
+      // readable only with the permission for the device from Android 10
+      return null;
+    }
+  }
+
+  /**
+   * Start capturing the bytes of this device, replacing the current capture
+   * @param captureWriter the files to capture to
+   */
+  public synchronized void startCapture(CaptureWriter captureWriter) {
+    stopCapture();
+    capture = captureWriter;
+    if (writeQueue != null) {
+      writeQueue.setCapture(captureWriter);
+    }
+  }
+
+  /**
+   * Stop capturing the bytes of this device
+   * @return the stopped capture, null if there was none
+   */
+  public synchronized CaptureWriter stopCapture() {
+    CaptureWriter stopped = capture;
+    capture = null;
+    if (writeQueue != null) {
+      writeQueue.setCapture(null);
+    }
+    if (stopped != null) {
+      stopped.close();
+    }
+    return stopped;
+  }
+
+  public CaptureWriter getCapture() {
+    return capture;
+  }
+
+  /**
+   * Queue a write at once if the session is open and no earlier write waits on the lane
+   * @return false if the write has to wait on the lane, it then has to be finished with
+   *   {@link #writeDeferred} or {@link #cancelDeferredWrite()}
+   */
+  public synchronized boolean writeNow(byte[] data, CallbackContext callbackContext, String successMessage) {
+    if (writeQueue != null && deferredWrites == 0) {
+      writeQueue.enqueue(data, callbackContext, successMessage);
+      return true;
+    }
+    deferredWrites++;
+    return false;
+  }
+
+  /**
+   * Queue a write that waited on the lane
+   */
+  public synchronized void writeDeferred(byte[] data, CallbackContext callbackContext, String successMessage) {
+    deferredWrites--;
+    if (writeQueue == null) {
+      callbackContext.error("Cannot write to a closed port.");
+      return;
+    }
+    writeQueue.enqueue(data, callbackContext, successMessage);
+  }
+
+  /**
+   * Drop a write that waited on the lane, its callback was already rejected
+   */
+  public synchronized void cancelDeferredWrite() {
+    deferredWrites--;
+  }
+
+  /**
+   * Start the dedicated reader of this device
+   * @param listener receives every chunk read from the port
+   */
+  public synchronized void startIoManager(TransportReader.Listener listener) {
+    // without receive buffer, pausing stops the reader, the flow control then holds the device
+    if (readingPaused && receiveBufferBytes <= 0) {
+      return;
+    }
+    if (transport != null && reader == null) {
+      if (stoppedReader != null) {
+        stoppedReader.awaitStop();
+        stoppedReader = null;
+      }
+      if (receiveBufferBytes > 0) {
+        receiveBuffer = new ReceiveBuffer(receiveBufferBytes, lowWatermark, overflowPolicy, readingPaused, getDeviceId(), listener);
+        receiveBuffer.start();
+        listener = receiveBuffer;
+      }
+      // queuing a request with a ByteBuffer reports the transferred length from Android 8
+      if (readRequests > 0 && transport instanceof UsbSerialTransport && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+        reader = new BulkInReader((UsbSerialTransport) transport, readBuffers, readRequests, stats, getDeviceId(), listener);
+      } else {
+        reader = new TransportReader(transport, readBuffers, stats, getDeviceId(), listener);
+        reader.setReadTimeout(readTimeoutMillis);
+      }
+      // with the block policy a full buffer holds the reads instead of the reader thread
+      reader.setGate(receiveBuffer);
+      reader.start();
+    }
+  }
+
+  /**
+   * Stop the dedicated reader of this device, if any, and flush the pending batch
+   */
+  public synchronized void stopIoManager() {
+    // a reader held by a full buffer is released first
+    if (receiveBuffer != null) {
+      receiveBuffer.stop();
+      receiveBuffer = null;
+    }
+    // the reader is not waited for here: detach runs on the main thread
+    if (reader != null) {
+      reader.stop();
+      stoppedReader = reader;
+      reader = null;
+    }
+    if (coalescer != null) {
+      coalescer.flush();
+    }
+    if (frameReducer != null) {
+      frameReducer.flush();
+    }
+  }
+
+  /**
+   * Pause or resume the delivery of the received data
+   * @param paused true to pause
+   * @return true if the reader has to be restarted to apply the change
+   */
+  public synchronized boolean setReadingPaused(boolean paused) {
+    readingPaused = paused;
+    if (receiveBuffer != null) {
+      receiveBuffer.setPaused(paused);
+      return false;
+    }
+    return receiveBufferBytes <= 0;
+  }
+
+  public boolean isReadingPaused() {
+    return readingPaused;
+  }
+
+  public synchronized ReceiveBuffer getReceiveBuffer() {
+    return receiveBuffer;
+  }
+
+  /**
+   * Create the coalescing stage of a new reader with the batching parameters of this device
+   * @param scheduler runs the time based flushes
+   * @param sink receives the batches
+   * @return the new {@link ReceiveCoalescer}
+   */
+  public synchronized ReceiveCoalescer createCoalescer(ScheduledExecutorService scheduler, ReceiveCoalescer.Sink sink) {
+    coalescer = new ReceiveCoalescer(coalesceBytes, coalesceMillis, scheduler, sink);
+    return coalescer;
+  }
+
+  public FrameDecoder getFrameDecoder() {
+    return frameDecoder;
+  }
+
+  /**
+   * Frame the bytes of a polling read, the frames are returned one per read, in order. The
+   * caller holds the read lock.
+   * @param data the bytes read, null to take a frame decoded by an earlier read
+   * @param length the number of bytes read
+   * @return the next complete frame, null if there is none
+   */
+  public byte[] nextPolledFrame(byte[] data, int length) {
+    if (data != null && length > 0) {
+      frameDecoder.setSink(pollingSink);
+      frameDecoder.push(data, 0, length);
+    }
+    return polledFrames.pollFirst();
+  }
+
+  /**
+   * Keep bytes read but not used for the next read, ahead of the bytes kept already. The caller
+   * holds the read lock.
+   */
+  public void unread(byte[] data, int offset, int length) {
+    if (length <= 0) {
+      return;
+    }
+    int kept = unread != null ? unread.length - unreadOffset : 0;
+    byte[] bytes = new byte[length + kept];
+    System.arraycopy(data, offset, bytes, 0, length);
+    if (kept > 0) {
+      System.arraycopy(unread, unreadOffset, bytes, length, kept);
+    }
+    unread = bytes;
+    unreadOffset = 0;
+  }
+
+  /**
+   * Take bytes kept by {@link #unread(byte[], int, int)}, already counted and captured when
+   * they were read. The caller holds the read lock.
+   * @param dest the buffer to copy them to
+   * @return the number of bytes copied, 0 if none are kept
+   */
+  public int takeUnread(byte[] dest) {
+    if (unread == null) {
+      return 0;
+    }
+    int length = Math.min(dest.length, unread.length - unreadOffset);
+    System.arraycopy(unread, unreadOffset, dest, 0, length);
+    unreadOffset += length;
+    if (unreadOffset == unread.length) {
+      unread = null;
+    }
+    return length;
+  }
+
+  public FrameReducer getFrameReducer() {
+    return frameReducer;
+  }
+
+  public ReceiveCoalescer getCoalescer() {
+    return coalescer;
   }
 
   public boolean isOpen() {
-    return connection != null;
+    return transport != null;
   }
 
-  public void setDevice(UsbDevice device) {
+  public synchronized void setDevice(UsbDevice device) {
     this.device = device;
+    if (device != null) {
+      vendorId = device.getVendorId();
+      productId = device.getProductId();
+      String readable = readSerialNumber(device);
+      if (readable != null) {
+        serialNumber = readable;
+      }
+    }
+  }
+
+  public UsbSerialDriver getDriver() {
+    return driver;
+  }
+
+  public void setDriver(UsbSerialDriver driver) {
+    this.driver = driver;
+  }
+
+  public WriteQueue getWriteQueue() {
+    return writeQueue;
+  }
+
+  public Object getReadLock() {
+    return readLock;
+  }
+
+  public DeviceStats getStats() {
+    return stats;
+  }
+
+  public ReadBufferPool getReadBuffers() {
+    return readBuffers;
+  }
+
+  public SerialTransport getTransport() {
+    return transport;
+  }
+
+  public boolean isStreaming() {
+    return streaming && transport != null;
+  }
+
+  /**
+   * Default timeout of the polling reads and timeout of the reads of the reader
+   */
+  public int getReadTimeout() {
+    return readTimeoutMillis;
   }
 
-  public UsbDeviceConnection getConnection() {
-    return connection;
+  /**
+   * @return the tuning in effect: lowLatency, readTimeout, the FTDI latencyTimer (-1 when not
+   *   set or not supported) and the coalescing parameters
+   */
+  public synchronized JSONObject getProfile() {
+    JSONObject profile = new JSONObject();
+    try {
+      profile.put("lowLatency", lowLatency);
+      profile.put("readTimeout", readTimeoutMillis);
+      profile.put("latencyTimer", latencyTimer);
+      profile.put("coalesceBytes", coalesceBytes);
+      profile.put("coalesceMillis", coalesceMillis);
+      profile.put("readRequests", readRequests);
+    } catch (JSONException ignored) {}
+    return profile;
   }
 
-  public void setConnection(UsbDeviceConnection connection) {
-    this.connection = connection;
+  public int getBaudRate() {
+    return baudRate;
   }
 }
@@ -0,0 +1,163 @@
+package org.apache.cordova.plugins.serial;
+
+import android.hardware.usb.UsbDevice;
+import android.util.Log;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Attached USB devices by device id, with their serialized descriptors. Filled once from the
+ * device list of the {@link android.hardware.usb.UsbManager}, then kept up to date by the
+ * attach/detach events of {@link UsbAttachReceiver} instead of rescanning the bus. Lookups
+ * are lock-free; changes and the rebuild of the descriptor list hold the registry lock, so a
+ * list built while a device comes or goes is not cached.
+ */
+public class DeviceRegistry {
+
+  // logging tag
+  private final String TAG = DeviceRegistry.class.getSimpleName();
+
+  /**
+   * Notified of every change of the registry
+   */
+  public interface Listener {
+    void onAttached(UsbDevice device, JSONObject descriptor);
+
+    void onDetached(UsbDevice device, JSONObject descriptor);
+  }
+
+  private final ConcurrentHashMap<Integer, UsbDevice> devices = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Integer, JSONObject> descriptors = new ConcurrentHashMap<>();
+  // descriptors of all devices, rebuilt on the first getDescriptors after a change
+  private volatile JSONArray descriptorList = null;
+  private Listener listener;
+
+  public void setListener(Listener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Replace the content of the registry with a full device list
+   * @param deviceList the device list of the {@link android.hardware.usb.UsbManager}
+   */
+  public synchronized void refresh(Map<String, UsbDevice> deviceList) {
+    devices.clear();
+    descriptors.clear();
+    for (UsbDevice device : deviceList.values()) {
+      devices.put(device.getDeviceId(), device);
+      descriptors.put(device.getDeviceId(), toJSON(device));
+    }
+    descriptorList = null;
+  }
+
+  /**
+   * Add an attached device and notify the listener
+   * @param device the attached device
+   */
+  public void attach(UsbDevice device) {
+    if (device == null) {
+      return;
+    }
+    JSONObject descriptor = toJSON(device);
+    synchronized (this) {
+      devices.put(device.getDeviceId(), device);
+      descriptors.put(device.getDeviceId(), descriptor);
+      descriptorList = null;
+    }
+    Log.d(TAG, "Device attached: " + device.getDeviceId());
+    if (listener != null) {
+      listener.onAttached(device, descriptor);
+    }
+  }
+
+  /**
+   * Remove a detached device and notify the listener
+   * @param device the detached device
+   */
+  public void detach(UsbDevice device) {
+    if (device == null) {
+      return;
+    }
+    JSONObject descriptor;
+    synchronized (this) {
+      devices.remove(device.getDeviceId());
+      descriptor = descriptors.remove(device.getDeviceId());
+      descriptorList = null;
+    }
+    Log.d(TAG, "Device detached: " + device.getDeviceId());
+    if (listener != null) {
+      listener.onDetached(device, descriptor != null ? descriptor : toJSON(device));
+    }
+  }
+
+  /**
+   * @param deviceId the id of a device
+   * @return the attached device or null
+   */
+  public UsbDevice get(int deviceId) {
+    return devices.get(deviceId);
+  }
+
+  /**
+   * @return the attached devices, a live view that must not be modified
+   */
+  public Collection<UsbDevice> getDevices() {
+    return Collections.unmodifiableCollection(devices.values());
+  }
+
+  public boolean isEmpty() {
+    return devices.isEmpty();
+  }
+
+  /**
+   * @param device a device
+   * @return the cached descriptor of the device, serialized if it is not attached
+   */
+  public JSONObject getDescriptor(UsbDevice device) {
+    JSONObject descriptor = descriptors.get(device.getDeviceId());
+    return descriptor != null ? descriptor : toJSON(device);
+  }
+
+  /**
+   * @return the descriptors of all attached devices, must not be modified
+   */
+  public JSONArray getDescriptors() {
+    JSONArray list = descriptorList;
+    if (list == null) {
+      synchronized (this) {
+        list = descriptorList;
+        if (list == null) {
+          list = new JSONArray();
+          for (JSONObject descriptor : descriptors.values()) {
+            list.put(descriptor);
+          }
+          descriptorList = list;
+        }
+      }
+    }
+    return list;
+  }
+
+  static JSONObject toJSON(UsbDevice device) {
+    JSONObject json = new JSONObject();
+    try {
+      json.put("deviceName", device.getDeviceName());
+      json.put("vendorId", device.getVendorId());
+      json.put("productId", device.getProductId());
+      json.put("deviceClass", device.getDeviceClass());
+      json.put("deviceSubclass", device.getDeviceSubclass());
+      json.put("deviceProtocol", device.getDeviceProtocol());
+      json.put("version", device.getVersion());
+      json.put("interfaces", device.getInterfaceCount());
+      json.put("deviceId", device.getDeviceId());
+    } catch (JSONException e) {
+      Log.e(DeviceRegistry.class.getSimpleName(), "Error creating JSON object for USB device", e);
+    }
+    return json;
+  }
+}
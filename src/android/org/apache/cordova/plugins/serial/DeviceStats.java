@@ -0,0 +1,120 @@
+package org.apache.cordova.plugins.serial;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * I/O counters and latency histograms of one device. Updates are lock-free and do not
+ * allocate, so they stay enabled in production.
+ */
+public class DeviceStats {
+
+  public final AtomicLong bytesIn = new AtomicLong();
+  public final AtomicLong bytesOut = new AtomicLong();
+  public final AtomicLong reads = new AtomicLong();
+  public final AtomicLong emptyReads = new AtomicLong();
+  public final AtomicLong writes = new AtomicLong();
+  public final AtomicLong writeTimeouts = new AtomicLong();
+  public final AtomicLong errors = new AtomicLong();
+  public final AtomicLong deliveries = new AtomicLong();
+  // FIFO overflows reported by the device, only FTDI chips report them
+  public final AtomicLong overruns = new AtomicLong();
+  // sessions reopened after the device was reattached
+  public final AtomicLong reconnects = new AtomicLong();
+  // start of the throughput measurement
+  private volatile long sinceNanos = System.nanoTime();
+  // duration of port.read, port.write and sendPluginResult
+  public final LatencyHistogram readLatency = new LatencyHistogram();
+  public final LatencyHistogram writeLatency = new LatencyHistogram();
+  public final LatencyHistogram deliveryLatency = new LatencyHistogram();
+  // time from the detach of the device to its reopened session
+  public final LatencyHistogram reconnectLatency = new LatencyHistogram();
+
+  /**
+   * Count one read
+   * @param len the number of bytes read
+   * @param nanos the duration of the read
+   */
+  public void onRead(int len, long nanos) {
+    reads.incrementAndGet();
+    if (len > 0) {
+      bytesIn.addAndGet(len);
+    } else {
+      emptyReads.incrementAndGet();
+    }
+    readLatency.record(nanos);
+  }
+
+  /**
+   * Count one write
+   * @param len the number of bytes written
+   * @param nanos the duration of the write
+   */
+  public void onWrite(int len, long nanos) {
+    writes.incrementAndGet();
+    bytesOut.addAndGet(len);
+    writeLatency.record(nanos);
+  }
+
+  /**
+   * Count one result sent to javascript
+   * @param nanos the duration of sendPluginResult
+   */
+  public void onDelivery(long nanos) {
+    deliveries.incrementAndGet();
+    deliveryLatency.record(nanos);
+  }
+
+  /**
+   * Count one session reopened after a reattach
+   * @param nanos the time since the device was detached
+   */
+  public void onReconnect(long nanos) {
+    reconnects.incrementAndGet();
+    reconnectLatency.record(nanos);
+  }
+
+  public void reset() {
+    bytesIn.set(0);
+    bytesOut.set(0);
+    reads.set(0);
+    emptyReads.set(0);
+    writes.set(0);
+    writeTimeouts.set(0);
+    errors.set(0);
+    deliveries.set(0);
+    overruns.set(0);
+    reconnects.set(0);
+    sinceNanos = System.nanoTime();
+    readLatency.reset();
+    writeLatency.reset();
+    deliveryLatency.reset();
+    reconnectLatency.reset();
+  }
+
+  public JSONObject toJSON() {
+    JSONObject json = new JSONObject();
+    double seconds = Math.max(System.nanoTime() - sinceNanos, 1) / 1e9;
+    try {
+      json.put("bytesIn", bytesIn.get());
+      json.put("bytesOut", bytesOut.get());
+      json.put("reads", reads.get());
+      json.put("emptyReads", emptyReads.get());
+      json.put("writes", writes.get());
+      json.put("writeTimeouts", writeTimeouts.get());
+      json.put("errors", errors.get());
+      json.put("deliveries", deliveries.get());
+      json.put("overruns", overruns.get());
+      json.put("reconnects", reconnects.get());
+      // average bytes per second since the first open or the last reset
+      json.put("bytesInPerSecond", Math.round(bytesIn.get() / seconds));
+      json.put("bytesOutPerSecond", Math.round(bytesOut.get() / seconds));
+      json.put("readLatency", readLatency.toJSON());
+      json.put("writeLatency", writeLatency.toJSON());
+      json.put("deliveryLatency", deliveryLatency.toJSON());
+      json.put("reconnectLatency", reconnectLatency.toJSON());
+    } catch (JSONException ignored) {}
+    return json;
+  }
+}
@@ -0,0 +1,210 @@
+package org.apache.cordova.plugins.serial;
+
+import android.content.SharedPreferences;
+import android.hardware.usb.UsbDevice;
+import android.util.Log;
+import com.hoho.android.usbserial.driver.CdcAcmSerialDriver;
+import com.hoho.android.usbserial.driver.Ch34xSerialDriver;
+import com.hoho.android.usbserial.driver.Cp21xxSerialDriver;
+import com.hoho.android.usbserial.driver.FtdiSerialDriver;
+import com.hoho.android.usbserial.driver.ProbeTable;
+import com.hoho.android.usbserial.driver.ProlificSerialDriver;
+import com.hoho.android.usbserial.driver.UsbSerialDriver;
+import com.hoho.android.usbserial.driver.UsbSerialProber;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Finds the drivers of the attached devices. A device is looked up in the custom VID/PID
+ * mappings registered by the app, then in the drivers found for it by earlier probes, and is
+ * only probed by the default prober when it is unknown. The drivers found by probing are
+ * persisted, so a known device is not probed again after a cold start; the custom mappings
+ * last as long as the plugin.
+ */
+public class DriverProber {
+
+  // logging tag
+  private final String TAG = DriverProber.class.getSimpleName();
+
+  private final SharedPreferences preferences;
+  // built once, building the default probe table queries every driver class
+  private final UsbSerialProber defaultProber = UsbSerialProber.getDefaultProber();
+  // custom mappings registered by the app
+  private final ProbeTable customTable = new ProbeTable();
+  private final Set<String> customProducts = new HashSet<>();
+  // drivers found by earlier probes by vendor and product id, as persisted
+  private final Map<String, Class<? extends UsbSerialDriver>> cachedDrivers = new HashMap<>();
+  // counters
+  private long probes = 0;
+  private long cacheHits = 0;
+
+  /**
+   * @param preferences where the drivers found are persisted
+   */
+  public DriverProber(SharedPreferences preferences) {
+    this.preferences = preferences;
+    for (Map.Entry<String, ?> entry : preferences.getAll().entrySet()) {
+      try {
+        Class<?> driverClass = Class.forName(String.valueOf(entry.getValue()));
+        if (UsbSerialDriver.class.isAssignableFrom(driverClass)) {
+          cachedDrivers.put(entry.getKey(), driverClass.asSubclass(UsbSerialDriver.class));
+        }
+      } catch (ClassNotFoundException e) {
+        // a driver of an older version of the library
+        Log.d(TAG, "Dropping cached driver: " + entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * @param name the simple name of a driver class
+   * @return the driver class
+   * @throws JSONException if the driver is unknown
+   */
+  public static Class<? extends UsbSerialDriver> driverClass(String name) throws JSONException {
+    switch (name) {
+      case "FtdiSerialDriver":
+        return FtdiSerialDriver.class;
+      case "CdcAcmSerialDriver":
+        return CdcAcmSerialDriver.class;
+      case "Cp21xxSerialDriver":
+        return Cp21xxSerialDriver.class;
+      case "ProlificSerialDriver":
+        return ProlificSerialDriver.class;
+      case "Ch34xSerialDriver":
+        return Ch34xSerialDriver.class;
+      default:
+        throw new JSONException("Unknown driver!");
+    }
+  }
+
+  /**
+   * @param value a vendor or product id, an integer Number or a hex String
+   * @return the id
+   */
+  public static int parseId(Object value) {
+    return value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(String.valueOf(value), 16);
+  }
+
+  /**
+   * Map a product to a driver, ahead of the drivers found by probing
+   */
+  public synchronized void addDriver(int vendorId, int productId, Class<? extends UsbSerialDriver> driverClass) {
+    customTable.addProduct(vendorId, productId, driverClass);
+    customProducts.add(vendorId + ":" + productId);
+  }
+
+  /**
+   * Map several products to their driver
+   * @param drivers an array of { vid, pid, driver }, driver defaults to CdcAcmSerialDriver
+   * @throws JSONException if an entry is invalid, the entries before it are kept
+   */
+  public void addDrivers(JSONArray drivers) throws JSONException {
+    for (int i = 0; i < drivers.length(); i++) {
+      JSONObject entry = drivers.getJSONObject(i);
+      try {
+        addDriver(
+          parseId(entry.get("vid")),
+          parseId(entry.get("pid")),
+          driverClass(entry.optString("driver", "CdcAcmSerialDriver"))
+        );
+      } catch (NumberFormatException e) {
+        throw new JSONException("Invalid vid or pid: " + entry);
+      }
+    }
+  }
+
+  /**
+   * Forget the drivers found by earlier probes, persisted ones included
+   */
+  public synchronized void clearCache() {
+    cachedDrivers.clear();
+    preferences.edit().clear().apply();
+  }
+
+  /**
+   * @param device an attached device
+   * @return the driver of the device, null if no driver supports it
+   */
+  public synchronized UsbSerialDriver probe(UsbDevice device) {
+    probes++;
+    String key = device.getVendorId() + ":" + device.getProductId();
+    // custom mappings are registered again by the app on each start, they are not persisted
+    Class<? extends UsbSerialDriver> driverClass = customTable.findDriver(device);
+    if (driverClass != null) {
+      UsbSerialDriver driver = newDriver(driverClass, device);
+      if (driver != null) {
+        return driver;
+      }
+    }
+    driverClass = cachedDrivers.get(key);
+    if (driverClass != null) {
+      cacheHits++;
+      UsbSerialDriver driver = newDriver(driverClass, device);
+      if (driver != null) {
+        return driver;
+      }
+    }
+    UsbSerialDriver driver = defaultProber.probeDevice(device);
+    if (driver != null) {
+      remember(key, driver.getClass());
+    }
+    return driver;
+  }
+
+  /**
+   * Create a driver of the given class for a device, without mapping or caching anything
+   * @return the driver, null if it cannot be created
+   */
+  public static UsbSerialDriver newDriver(Class<? extends UsbSerialDriver> driverClass, UsbDevice device) {
+    try {
+      return driverClass.getConstructor(UsbDevice.class).newInstance(device);
+    } catch (ReflectiveOperationException e) {
+      Log.d(DriverProber.class.getSimpleName(), "Cannot create " + driverClass.getSimpleName() + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  private void remember(String key, Class<? extends UsbSerialDriver> driverClass) {
+    if (cachedDrivers.put(key, driverClass) != driverClass) {
+      preferences.edit().putString(key, driverClass.getName()).apply();
+    }
+  }
+
+  /**
+   * @param devices the attached devices
+   * @return the drivers of the supported devices
+   */
+  public List<UsbSerialDriver> findAllDrivers(Collection<UsbDevice> devices) {
+    List<UsbSerialDriver> drivers = new ArrayList<>();
+    for (UsbDevice device : devices) {
+      UsbSerialDriver driver = probe(device);
+      if (driver != null) {
+        drivers.add(driver);
+      }
+    }
+    return drivers;
+  }
+
+  /**
+   * @return the number of custom mappings and cached drivers, and the probe counters
+   */
+  public synchronized JSONObject toJSON() {
+    JSONObject json = new JSONObject();
+    try {
+      json.put("customDrivers", customProducts.size());
+      json.put("cachedDrivers", cachedDrivers.size());
+      json.put("probes", probes);
+      json.put("cacheHits", cacheHits);
+    } catch (JSONException ignored) {}
+    return json;
+  }
+}
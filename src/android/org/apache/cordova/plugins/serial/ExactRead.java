@@ -0,0 +1,164 @@
+package org.apache.cordova.plugins.serial;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Bulk read of a known number of bytes, such as a flash or log dump, into one array allocated
+ * up front. The read ends once length bytes were received, when no byte arrived for
+ * idleTimeout milliseconds or when the optional timeout of the whole read passes. Progress is
+ * reported at most every progressMillis milliseconds. Bytes of the last transfer past length
+ * are kept for the next read of the device.
+ */
+public class ExactRead {
+
+  // Default silence after which the read gives up
+  private static final int DEFAULT_IDLE_TIMEOUT_MILLIS = 2000;
+  // Default interval between two progress reports
+  private static final int DEFAULT_PROGRESS_MILLIS = 250;
+  // Largest read, the payload goes through the bridge base64 encoded, a third larger, and is
+  // copied on the way: larger dumps are read with several calls
+  private static final int MAX_LENGTH = 8 * 1024 * 1024;
+
+  /**
+   * Notified of the progress of the read, on the thread running it
+   */
+  public interface ProgressListener {
+    void onProgress(int bytes, int length, long bytesPerSecond);
+  }
+
+  private final byte[] data;
+  private final int timeoutMillis;
+  private final int idleTimeoutMillis;
+  private final long progressNanos;
+
+  // results
+  private int received = 0;
+  // bytes read past length, in the last transfer, kept for the next read
+  private int excess = 0;
+  private long startNanos = 0;
+  private long firstByteNanos = -1;
+  private long lastByteNanos = -1;
+  private long totalNanos = 0;
+
+  /**
+   * @param opts a {@link JSONObject} containing length, timeout (0 for none), idleTimeout and progressMillis
+   * @throws JSONException if an option is invalid
+   */
+  public ExactRead(JSONObject opts) throws JSONException {
+    int length = opts.getInt("length");
+    if (length <= 0 || length > MAX_LENGTH) {
+      throw new JSONException("length must be between 1 and " + MAX_LENGTH + ".");
+    }
+    this.data = new byte[length];
+    this.timeoutMillis = opts.optInt("timeout", 0);
+    this.idleTimeoutMillis = opts.has("idleTimeout") ? opts.getInt("idleTimeout") : DEFAULT_IDLE_TIMEOUT_MILLIS;
+    this.progressNanos = TimeUnit.MILLISECONDS.toNanos(opts.optInt("progressMillis", DEFAULT_PROGRESS_MILLIS));
+  }
+
+  /**
+   * Run the read, holding the read lock of the device
+   * @param deviceConnection the open device
+   * @param listener notified of the progress, may be null
+   * @throws IOException if a read fails
+   */
+  public void run(DeviceConnection deviceConnection, ProgressListener listener) throws IOException {
+    final long start = startNanos = System.nanoTime();
+    final long deadline = timeoutMillis > 0 ? start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : Long.MAX_VALUE;
+    final long idleNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+    SerialTransport transport = deviceConnection.getTransport();
+    DeviceStats stats = deviceConnection.getStats();
+    if (transport == null) {
+      throw new IOException("Reading a closed port.");
+    }
+
+    synchronized (deviceConnection.getReadLock()) {
+      ReadBufferPool readBuffers = deviceConnection.getReadBuffers();
+      byte[] buffer = readBuffers.acquire();
+      try {
+        long lastProgress = start;
+        long lastActivity = start;
+        while (received < data.length) {
+          long now = System.nanoTime();
+          long wait = Math.min(deadline - now, lastActivity + idleNanos - now);
+          if (wait <= 0) {
+            break;
+          }
+          int len = deviceConnection.takeUnread(buffer);
+          if (len == 0) {
+            // a timeout of 0 would block forever
+            int timeout = (int) Math.max(Math.min(TimeUnit.NANOSECONDS.toMillis(wait), Integer.MAX_VALUE), 1);
+            long readStart = System.nanoTime();
+            try {
+              len = transport.read(buffer, timeout);
+            } catch (IOException e) {
+              stats.errors.incrementAndGet();
+              throw e;
+            }
+            stats.onRead(len, System.nanoTime() - readStart);
+            if (len <= 0) {
+              continue;
+            }
+            CaptureWriter capture = deviceConnection.getCapture();
+            if (capture != null) {
+              capture.record(CaptureWriter.IN, buffer, 0, len);
+            }
+          }
+          lastActivity = lastByteNanos = System.nanoTime();
+          if (firstByteNanos < 0) {
+            firstByteNanos = lastByteNanos;
+          }
+          int count = Math.min(len, data.length - received);
+          System.arraycopy(buffer, 0, data, received, count);
+          received += count;
+          if (count < len) {
+            excess = len - count;
+            deviceConnection.unread(buffer, count, excess);
+          }
+          if (listener != null && received < data.length && lastByteNanos - lastProgress >= progressNanos) {
+            lastProgress = lastByteNanos;
+            listener.onProgress(received, data.length, getBytesPerSecond());
+          }
+        }
+      } finally {
+        readBuffers.release(buffer);
+      }
+    }
+    totalNanos = System.nanoTime() - start;
+  }
+
+  /**
+   * @return the bytes received, the whole preallocated array once complete
+   */
+  public byte[] getData() {
+    return received == data.length ? data : Arrays.copyOf(data, received);
+  }
+
+  /**
+   * @return the throughput from the first to the last byte received
+   */
+  private long getBytesPerSecond() {
+    long nanos = lastByteNanos - firstByteNanos;
+    return nanos > 0 ? Math.round(received * 1e9 / nanos) : 0;
+  }
+
+  /**
+   * @return whether the read is complete, the bytes received and the achieved throughput
+   */
+  public JSONObject getInfo() {
+    JSONObject info = new JSONObject();
+    try {
+      info.put("complete", received == data.length);
+      info.put("bytes", received);
+      info.put("length", data.length);
+      info.put("excessBytes", excess);
+      info.put("firstByteMillis", firstByteNanos >= 0 ? (firstByteNanos - startNanos) / 1e6 : -1);
+      info.put("totalMillis", totalNanos / 1e6);
+      info.put("bytesPerSecond", getBytesPerSecond());
+    } catch (JSONException ignored) {}
+    return info;
+  }
+}
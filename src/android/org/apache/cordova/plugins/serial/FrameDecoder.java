@@ -0,0 +1,380 @@
+package org.apache.cordova.plugins.serial;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Splits the stream read from a device into frames on the reader thread, so only complete
+ * frames are sent to javascript. Supported modes:
+ * <ul>
+ *   <li>delimiter: frames end with a delimiter, a newline by default</li>
+ *   <li>fixed: frames of a fixed length</li>
+ *   <li>lengthPrefix: frames start with their length on 1, 2 or 4 bytes, big or little endian</li>
+ *   <li>slip: SLIP encoded frames (RFC 1055)</li>
+ *   <li>cobs: COBS encoded frames delimited by a zero byte</li>
+ * </ul>
+ * Malformed frames and frames longer than maxFrameLength are dropped and counted.
+ */
+public class FrameDecoder {
+
+  /**
+   * Receives the decoded frames
+   */
+  public interface Sink {
+    void onFrame(byte[] frame);
+  }
+
+  private static final int MODE_DELIMITER = 0;
+  private static final int MODE_FIXED = 1;
+  private static final int MODE_LENGTH_PREFIX = 2;
+  private static final int MODE_SLIP = 3;
+  private static final int MODE_COBS = 4;
+
+  private static final int DEFAULT_MAX_FRAME_LENGTH = 4096;
+
+  private static final int SLIP_END = 0xC0;
+  private static final int SLIP_ESC = 0xDB;
+  private static final int SLIP_ESC_END = 0xDC;
+  private static final int SLIP_ESC_ESC = 0xDD;
+
+  private final int mode;
+  private final int maxFrameLength;
+  // delimiter mode
+  private final byte[] delimiter;
+  private final boolean includeDelimiter;
+  // fixed and lengthPrefix modes
+  private final int frameLength;
+  private final int prefixBytes;
+  private final boolean bigEndian;
+  private final boolean lengthIncludesPrefix;
+
+  private Sink sink;
+  // frame being assembled
+  private final byte[] buffer;
+  private int length = 0;
+  // dropping bytes up to the next frame boundary after an error
+  private boolean discarding = false;
+  // lengthPrefix mode: header bytes read so far, body length, bytes left to skip
+  private int headerRead = 0;
+  private int bodyLength = -1;
+  private long skip = 0;
+  // slip mode: previous byte was an escape
+  private boolean escaped = false;
+  // counters
+  private volatile long frames = 0;
+  private volatile long malformed = 0;
+  private volatile long overlong = 0;
+
+  /**
+   * @param opts the framing options given on open, e.g. { mode: "lengthPrefix", prefixBytes: 2, endian: "little" }
+   * @throws JSONException if the options are invalid
+   */
+  public FrameDecoder(JSONObject opts) throws JSONException {
+    String name = opts.optString("mode", "delimiter");
+    maxFrameLength = opts.has("maxFrameLength") ? opts.getInt("maxFrameLength") : DEFAULT_MAX_FRAME_LENGTH;
+    delimiter = opts.has("delimiter") ? parseDelimiter(opts.get("delimiter")) : new byte[] { '\n' };
+    includeDelimiter = opts.optBoolean("includeDelimiter", false);
+    frameLength = opts.optInt("length", 0);
+    prefixBytes = opts.optInt("prefixBytes", 1);
+    bigEndian = !"little".equals(opts.optString("endian", "big"));
+    lengthIncludesPrefix = opts.optBoolean("lengthIncludesPrefix", false);
+
+    switch (name) {
+      case "delimiter":
+        mode = MODE_DELIMITER;
+        if (delimiter.length == 0) {
+          throw new JSONException("Framing delimiter is empty.");
+        }
+        break;
+      case "fixed":
+        mode = MODE_FIXED;
+        if (frameLength <= 0) {
+          throw new JSONException("Fixed framing needs a positive length.");
+        }
+        break;
+      case "lengthPrefix":
+        mode = MODE_LENGTH_PREFIX;
+        if (prefixBytes != 1 && prefixBytes != 2 && prefixBytes != 4) {
+          throw new JSONException("Length prefix must be 1, 2 or 4 bytes.");
+        }
+        break;
+      case "slip":
+        mode = MODE_SLIP;
+        break;
+      case "cobs":
+        mode = MODE_COBS;
+        break;
+      default:
+        throw new JSONException("Unknown framing mode: " + name);
+    }
+    if (maxFrameLength <= 0) {
+      throw new JSONException("maxFrameLength must be positive.");
+    }
+    if (mode == MODE_FIXED && frameLength > maxFrameLength) {
+      throw new JSONException("Fixed framing length exceeds maxFrameLength.");
+    }
+    int capacity = mode == MODE_FIXED ? frameLength : maxFrameLength;
+    if (mode == MODE_DELIMITER) {
+      capacity += delimiter.length;
+    }
+    buffer = new byte[capacity];
+  }
+
+  private static byte[] parseDelimiter(Object value) throws JSONException {
+    if (value instanceof JSONArray) {
+      JSONArray array = (JSONArray) value;
+      byte[] bytes = new byte[array.length()];
+      for (int i = 0; i < bytes.length; i++) {
+        bytes[i] = (byte) array.getInt(i);
+      }
+      return bytes;
+    }
+    if (value instanceof Number) {
+      return new byte[] { (byte) ((Number) value).intValue() };
+    }
+    return value.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  public void setSink(Sink sink) {
+    this.sink = sink;
+  }
+
+  /**
+   * Forget the partial frame, used when the reader restarts
+   */
+  public void reset() {
+    length = 0;
+    discarding = false;
+    headerRead = 0;
+    bodyLength = -1;
+    skip = 0;
+    escaped = false;
+  }
+
+  /**
+   * Decode a chunk read from the device, complete frames are sent to the sink
+   * @param data the bytes read
+   * @param offset first byte to decode
+   * @param count number of bytes to decode
+   */
+  public void push(byte[] data, int offset, int count) {
+    int end = offset + count;
+    for (int i = offset; i < end; i++) {
+      int b = data[i] & 0xFF;
+      switch (mode) {
+        case MODE_DELIMITER:
+          pushDelimited(b);
+          break;
+        case MODE_FIXED:
+          buffer[length++] = (byte) b;
+          if (length == frameLength) {
+            emit(buffer, length);
+          }
+          break;
+        case MODE_LENGTH_PREFIX:
+          pushLengthPrefixed(b);
+          break;
+        case MODE_SLIP:
+          pushSlip(b);
+          break;
+        default:
+          pushCobs(b);
+          break;
+      }
+    }
+  }
+
+  private void pushDelimited(int b) {
+    if (discarding) {
+      // look for the end of the dropped frame, the delimiter bytes are kept at the start of the buffer
+      buffer[length++] = (byte) b;
+      if (endsWithDelimiter()) {
+        discarding = false;
+        length = 0;
+      } else if (length == delimiter.length) {
+        System.arraycopy(buffer, 1, buffer, 0, --length);
+      }
+      return;
+    }
+    buffer[length++] = (byte) b;
+    if (endsWithDelimiter()) {
+      int frameEnd = includeDelimiter ? length : length - delimiter.length;
+      if (frameEnd > 0) {
+        emit(buffer, frameEnd);
+      }
+      length = 0;
+    } else if (length == buffer.length) {
+      overlong++;
+      discarding = true;
+      System.arraycopy(buffer, length - (delimiter.length - 1), buffer, 0, delimiter.length - 1);
+      length = delimiter.length - 1;
+    }
+  }
+
+  private boolean endsWithDelimiter() {
+    if (length < delimiter.length) {
+      return false;
+    }
+    int start = length - delimiter.length;
+    for (int i = 0; i < delimiter.length; i++) {
+      if (buffer[start + i] != delimiter[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void pushLengthPrefixed(int b) {
+    if (skip > 0) {
+      skip--;
+      return;
+    }
+    if (bodyLength < 0) {
+      // read the header
+      if (bigEndian) {
+        headerRead++;
+        length = (length << 8) | b;
+      } else {
+        length |= b << (8 * headerRead++);
+      }
+      if (headerRead < prefixBytes) {
+        return;
+      }
+      long declared = length & 0xFFFFFFFFL;
+      headerRead = 0;
+      length = 0;
+      if (lengthIncludesPrefix) {
+        declared -= prefixBytes;
+        if (declared < 0) {
+          malformed++;
+          return;
+        }
+      }
+      if (declared > maxFrameLength) {
+        overlong++;
+        skip = declared;
+        return;
+      }
+      if (declared == 0) {
+        emit(buffer, 0);
+        return;
+      }
+      bodyLength = (int) declared;
+      return;
+    }
+    buffer[length++] = (byte) b;
+    if (length == bodyLength) {
+      bodyLength = -1;
+      emit(buffer, length);
+    }
+  }
+
+  private void pushSlip(int b) {
+    if (b == SLIP_END) {
+      if (!discarding && length > 0) {
+        if (escaped) {
+          malformed++;
+        } else {
+          emit(buffer, length);
+        }
+      }
+      length = 0;
+      discarding = false;
+      escaped = false;
+      return;
+    }
+    if (discarding) {
+      return;
+    }
+    if (escaped) {
+      escaped = false;
+      if (b == SLIP_ESC_END) {
+        b = SLIP_END;
+      } else if (b == SLIP_ESC_ESC) {
+        b = SLIP_ESC;
+      } else {
+        malformed++;
+        discarding = true;
+        return;
+      }
+    } else if (b == SLIP_ESC) {
+      escaped = true;
+      return;
+    }
+    append(b);
+  }
+
+  private void pushCobs(int b) {
+    if (b == 0) {
+      if (!discarding && length > 0) {
+        int decoded = decodeCobs(buffer, length);
+        if (decoded < 0) {
+          malformed++;
+        } else if (decoded > 0) {
+          emit(buffer, decoded);
+        }
+      }
+      length = 0;
+      discarding = false;
+      return;
+    }
+    if (!discarding) {
+      append(b);
+    }
+  }
+
+  /**
+   * Decode a COBS frame in place
+   * @return the decoded length, -1 if the frame is malformed
+   */
+  private static int decodeCobs(byte[] frame, int count) {
+    int in = 0;
+    int out = 0;
+    while (in < count) {
+      int code = frame[in++] & 0xFF;
+      if (in + code - 1 > count) {
+        return -1;
+      }
+      for (int i = 1; i < code; i++) {
+        frame[out++] = frame[in++];
+      }
+      if (code < 0xFF && in < count) {
+        frame[out++] = 0;
+      }
+    }
+    return out;
+  }
+
+  private void append(int b) {
+    if (length == buffer.length) {
+      overlong++;
+      discarding = true;
+      length = 0;
+      return;
+    }
+    buffer[length++] = (byte) b;
+  }
+
+  private void emit(byte[] frame, int count) {
+    frames++;
+    length = 0;
+    if (sink != null) {
+      sink.onFrame(Arrays.copyOf(frame, count));
+    }
+  }
+
+  public long getFrames() {
+    return frames;
+  }
+
+  public long getMalformed() {
+    return malformed;
+  }
+
+  public long getOverlong() {
+    return overlong;
+  }
+}
@@ -0,0 +1,251 @@
+package org.apache.cordova.plugins.serial;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Reduces the frames of a framed stream before they are sent to javascript. Modes:
+ * <ul>
+ *   <li>nth: keeps every nth frame</li>
+ *   <li>latest: keeps the latest frame of every time window</li>
+ *   <li>stats: sends, for every time window, the min, max and mean of numeric fields read at
+ *   fixed offsets of the frames, as little endian doubles: count, then min, max and mean of
+ *   each field</li>
+ * </ul>
+ * A window starts with its first frame, so nothing is sent while no frame arrives.
+ */
+public class FrameReducer implements FrameDecoder.Sink {
+
+  private static final int MODE_NTH = 0;
+  private static final int MODE_LATEST = 1;
+  private static final int MODE_STATS = 2;
+
+  /**
+   * A numeric field of the frames
+   */
+  private static class Field {
+
+    final int offset;
+    final String type;
+    final ByteOrder order;
+    final int size;
+
+    Field(JSONObject opts) throws JSONException {
+      offset = opts.getInt("offset");
+      type = opts.optString("type", "uint8");
+      order = "big".equals(opts.optString("endian", "little")) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+      switch (type) {
+        case "int8":
+        case "uint8":
+          size = 1;
+          break;
+        case "int16":
+        case "uint16":
+          size = 2;
+          break;
+        case "int32":
+        case "uint32":
+        case "float32":
+          size = 4;
+          break;
+        case "float64":
+          size = 8;
+          break;
+        default:
+          throw new JSONException("Unknown field type: " + type);
+      }
+      if (offset < 0) {
+        throw new JSONException("Field offset must not be negative.");
+      }
+    }
+
+    /**
+     * @return the value of the field, NaN if the frame is too short
+     */
+    double read(byte[] frame) {
+      if (offset + size > frame.length) {
+        return Double.NaN;
+      }
+      ByteBuffer buffer = ByteBuffer.wrap(frame, offset, size).order(order);
+      switch (type) {
+        case "int8":
+          return buffer.get();
+        case "uint8":
+          return buffer.get() & 0xFF;
+        case "int16":
+          return buffer.getShort();
+        case "uint16":
+          return buffer.getShort() & 0xFFFF;
+        case "int32":
+          return buffer.getInt();
+        case "uint32":
+          return buffer.getInt() & 0xFFFFFFFFL;
+        case "float32":
+          return buffer.getFloat();
+        default:
+          return buffer.getDouble();
+      }
+    }
+  }
+
+  private final int mode;
+  private final int n;
+  private final int windowMillis;
+  private final Field[] fields;
+  private ScheduledExecutorService scheduler;
+  private FrameDecoder.Sink sink;
+  // current window
+  private long seen = 0;
+  private byte[] latest = null;
+  private long count = 0;
+  private final double[] min;
+  private final double[] max;
+  private final double[] sum;
+  private ScheduledFuture<?> pendingFlush = null;
+  // counters
+  private long framesIn = 0;
+  private long framesOut = 0;
+
+  private final Runnable flushByWindow = new Runnable() {
+    public void run() {
+      synchronized (FrameReducer.this) {
+        pendingFlush = null;
+        flushWindow();
+      }
+    }
+  };
+
+  /**
+   * @param opts the reduce options given on open, e.g. { mode: "stats", windowMillis: 50, fields: [{ offset: 0, type: "int16" }] }
+   * @throws JSONException if the options are invalid
+   */
+  public FrameReducer(JSONObject opts) throws JSONException {
+    String name = opts.optString("mode", "nth");
+    n = opts.optInt("n", 1);
+    windowMillis = opts.optInt("windowMillis", 50);
+    JSONArray fieldList = opts.optJSONArray("fields");
+    fields = new Field[fieldList != null ? fieldList.length() : 0];
+    for (int i = 0; i < fields.length; i++) {
+      fields[i] = new Field(fieldList.getJSONObject(i));
+    }
+    min = new double[fields.length];
+    max = new double[fields.length];
+    sum = new double[fields.length];
+
+    switch (name) {
+      case "nth":
+        mode = MODE_NTH;
+        if (n <= 0) {
+          throw new JSONException("n must be positive.");
+        }
+        break;
+      case "latest":
+        mode = MODE_LATEST;
+        break;
+      case "stats":
+        mode = MODE_STATS;
+        if (fields.length == 0) {
+          throw new JSONException("Stats reduction needs fields.");
+        }
+        break;
+      default:
+        throw new JSONException("Unknown reduce mode: " + name);
+    }
+    if (mode != MODE_NTH && windowMillis <= 0) {
+      throw new JSONException("windowMillis must be positive.");
+    }
+  }
+
+  /**
+   * Connect the reducer to a new reader, the current window is dropped
+   * @param scheduler runs the end of the windows
+   * @param sink receives the reduced frames
+   */
+  public synchronized void start(ScheduledExecutorService scheduler, FrameDecoder.Sink sink) {
+    this.scheduler = scheduler;
+    this.sink = sink;
+    if (pendingFlush != null) {
+      pendingFlush.cancel(false);
+      pendingFlush = null;
+    }
+    seen = 0;
+    latest = null;
+    count = 0;
+  }
+
+  @Override
+  public synchronized void onFrame(byte[] frame) {
+    framesIn++;
+    switch (mode) {
+      case MODE_NTH:
+        if (seen++ % n == 0) {
+          send(frame);
+        }
+        return;
+      case MODE_LATEST:
+        latest = frame;
+        break;
+      default:
+        for (int i = 0; i < fields.length; i++) {
+          double value = fields[i].read(frame);
+          if (count == 0 || value < min[i]) min[i] = value;
+          if (count == 0 || value > max[i]) max[i] = value;
+          sum[i] = count == 0 ? value : sum[i] + value;
+        }
+        count++;
+        break;
+    }
+    if (pendingFlush == null && scheduler != null) {
+      pendingFlush = scheduler.schedule(flushByWindow, windowMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Send the current window, used when the reader stops
+   */
+  public synchronized void flush() {
+    if (pendingFlush != null) {
+      pendingFlush.cancel(false);
+      pendingFlush = null;
+    }
+    flushWindow();
+  }
+
+  private void flushWindow() {
+    if (mode == MODE_LATEST && latest != null) {
+      send(latest);
+      latest = null;
+    } else if (mode == MODE_STATS && count > 0) {
+      ByteBuffer summary = ByteBuffer.allocate(8 * (1 + 3 * fields.length)).order(ByteOrder.LITTLE_ENDIAN);
+      summary.putDouble(count);
+      for (int i = 0; i < fields.length; i++) {
+        summary.putDouble(min[i]);
+        summary.putDouble(max[i]);
+        summary.putDouble(sum[i] / count);
+      }
+      count = 0;
+      send(summary.array());
+    }
+  }
+
+  private void send(byte[] frame) {
+    framesOut++;
+    if (sink != null) {
+      sink.onFrame(frame);
+    }
+  }
+
+  public synchronized long getFramesIn() {
+    return framesIn;
+  }
+
+  public synchronized long getFramesOut() {
+    return framesOut;
+  }
+}
@@ -0,0 +1,51 @@
+package org.apache.cordova.plugins.serial;
+
+import java.util.Arrays;
+
+/**
+ * Hex string decoding, kept free of Android and Cordova classes so it runs on a plain JVM
+ */
+public final class HexCodec {
+
+  // Value of the ASCII hex digits, -1 for every other character
+  private static final int[] HEX_VALUES = new int[128];
+
+  static {
+    Arrays.fill(HEX_VALUES, -1);
+    for (int i = 0; i < 10; i++) {
+      HEX_VALUES['0' + i] = i;
+    }
+    for (int i = 0; i < 6; i++) {
+      HEX_VALUES['a' + i] = 10 + i;
+      HEX_VALUES['A' + i] = 10 + i;
+    }
+  }
+
+  private HexCodec() {}
+
+  /**
+   * Convert a given string of hexadecimal numbers
+   * into a byte[] array where every 2 hex chars get packed into
+   * a single byte.
+   * E.g. "ffaa55" results in a 3 byte long byte array
+   *
+   * @throws IllegalArgumentException if the string has an odd length or a non hex character
+   */
+  public static byte[] decode(String s) throws IllegalArgumentException {
+    int len = s.length();
+    if ((len & 1) != 0) {
+      throw new IllegalArgumentException("Hex string has an odd length.");
+    }
+    byte[] data = new byte[len / 2];
+    for (int i = 0; i < len; i += 2) {
+      char high = s.charAt(i);
+      char low = s.charAt(i + 1);
+      int value = high < 128 && low < 128 ? (HEX_VALUES[high] << 4) | HEX_VALUES[low] : -1;
+      if (value < 0) {
+        throw new IllegalArgumentException("Invalid hex character at index " + i + ".");
+      }
+      data[i / 2] = (byte) value;
+    }
+    return data;
+  }
+}
@@ -0,0 +1,80 @@
+package org.apache.cordova.plugins.serial;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Lock-free latency histogram with power of two buckets in microseconds: bucket i counts the
+ * durations below 2^i us and at least 2^(i-1) us. Recording a sample does not allocate.
+ */
+public class LatencyHistogram {
+
+  private static final int BUCKETS = 32;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong totalNanos = new AtomicLong();
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  /**
+   * @param nanos the duration of one operation
+   */
+  public void record(long nanos) {
+    long micros = Math.max(nanos, 0) / 1000;
+    int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+    buckets.incrementAndGet(bucket);
+    count.incrementAndGet();
+    totalNanos.addAndGet(nanos);
+    long max = maxNanos.get();
+    while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+      max = maxNanos.get();
+    }
+  }
+
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets.set(i, 0);
+    }
+    count.set(0);
+    totalNanos.set(0);
+    maxNanos.set(0);
+  }
+
+  /**
+   * @param fraction the fraction of the samples, e.g. 0.99
+   * @return upper bound in microseconds of the bucket holding the percentile, 0 without sample
+   */
+  public long percentileMicros(double fraction) {
+    long total = 0;
+    long[] snapshot = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = buckets.get(i);
+      total += snapshot[i];
+    }
+    long rank = (long) Math.ceil(total * fraction);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank && seen > 0) {
+        return 1L << i;
+      }
+    }
+    return 0;
+  }
+
+  public JSONObject toJSON() {
+    JSONObject json = new JSONObject();
+    long samples = count.get();
+    try {
+      json.put("count", samples);
+      json.put("meanMicros", samples > 0 ? totalNanos.get() / samples / 1000 : 0);
+      json.put("maxMicros", maxNanos.get() / 1000);
+      json.put("p50Micros", percentileMicros(0.50));
+      json.put("p90Micros", percentileMicros(0.90));
+      json.put("p99Micros", percentileMicros(0.99));
+    } catch (JSONException ignored) {}
+    return json;
+  }
+}
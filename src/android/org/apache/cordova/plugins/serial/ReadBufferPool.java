@@ -0,0 +1,72 @@
+package org.apache.cordova.plugins.serial;
+
+import java.util.ArrayDeque;
+
+/**
+ * Read buffers of one device. A buffer is owned by a single reader between
+ * {@link #acquire()} and {@link #release(byte[])}, and is reused by the next read,
+ * so polling reads do not allocate in steady state nor share a buffer across threads.
+ */
+public class ReadBufferPool {
+
+  // size used when the read endpoint is unknown
+  public static final int DEFAULT_SIZE = 4096;
+  // largest bulk transfer the USB stack accepts in one read
+  public static final int MAX_SIZE = 16384;
+  // buffers kept for reuse, more concurrent readers get a transient buffer
+  private static final int MAX_POOLED = 4;
+
+  private final int bufferSize;
+  private final ArrayDeque<byte[]> buffers = new ArrayDeque<>(MAX_POOLED);
+
+  public ReadBufferPool(int bufferSize) {
+    this.bufferSize = bufferSize;
+  }
+
+  /**
+   * Size of a buffer holding what the device can send during one read: the bytes received at
+   * baudRate during windowMillis (10 bits per byte on the line), rounded up to whole packets
+   * @param maxPacketSize max packet size of the read endpoint, 0 if unknown
+   * @param baudRate line speed
+   * @param windowMillis read timeout the buffer is sized for
+   * @return the buffer size in bytes
+   */
+  public static int bufferSize(int maxPacketSize, int baudRate, int windowMillis) {
+    if (maxPacketSize <= 0) {
+      return DEFAULT_SIZE;
+    }
+    long bytes = (long) baudRate / 10 * windowMillis / 1000;
+    long packets = Math.max(1, (bytes + maxPacketSize - 1) / maxPacketSize);
+    return (int) Math.min(packets * maxPacketSize, Math.max(MAX_SIZE / maxPacketSize, 1) * maxPacketSize);
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * Take a buffer for exclusive use
+   * @return a pooled buffer, or a new one if all of them are in use
+   */
+  public byte[] acquire() {
+    synchronized (buffers) {
+      byte[] buffer = buffers.pollFirst();
+      if (buffer != null) {
+        return buffer;
+      }
+    }
+    return new byte[bufferSize];
+  }
+
+  /**
+   * Give back a buffer taken with {@link #acquire()}
+   * @param buffer the buffer, not used by the caller anymore
+   */
+  public void release(byte[] buffer) {
+    synchronized (buffers) {
+      if (buffers.size() < MAX_POOLED) {
+        buffers.offerFirst(buffer);
+      }
+    }
+  }
+}
@@ -0,0 +1,213 @@
+package org.apache.cordova.plugins.serial;
+
+import android.util.Log;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Bounded buffer between the reader of a device and the delivery of its data, drained by a
+ * dedicated delivery thread that can be paused. When the buffered bytes reach the high
+ * watermark the overflow policy applies:
+ * <ul>
+ *   <li>block: the reader stops issuing reads until the buffer drains to the low watermark, so
+ *   the chip buffer fills and the flow control of the line throttles the device. The chunks of
+ *   the reads already issued are still taken, the buffer can exceed the watermark by them</li>
+ *   <li>dropOldest: the oldest chunks are dropped to make room</li>
+ *   <li>dropNewest: the incoming chunk is dropped</li>
+ * </ul>
+ */
+public class ReceiveBuffer implements TransportReader.Listener, TransportReader.Gate, Runnable {
+
+  // logging tag
+  private final String TAG = ReceiveBuffer.class.getSimpleName();
+
+  public static final int POLICY_BLOCK = 0;
+  public static final int POLICY_DROP_OLDEST = 1;
+  public static final int POLICY_DROP_NEWEST = 2;
+
+  private final int highWatermark;
+  private final int lowWatermark;
+  private final int policy;
+  private final TransportReader.Listener listener;
+  private final ArrayDeque<byte[]> chunks = new ArrayDeque<>();
+  private final Thread thread;
+  private int bufferedBytes = 0;
+  private boolean paused;
+  private boolean running = true;
+  // the reader holds its reads until the low watermark
+  private boolean blocked = false;
+  private long blockStart = 0;
+  // counters
+  private long highWatermarkHits = 0;
+  private long droppedBytes = 0;
+  private long droppedChunks = 0;
+  private long blockedNanos = 0;
+
+  /**
+   * @param highWatermark buffered bytes at which the overflow policy applies
+   * @param lowWatermark buffered bytes at which a blocked reader goes on
+   * @param policy one of the POLICY constants
+   * @param paused whether the delivery starts paused
+   * @param deviceId used to name the delivery thread
+   * @param listener receives the data on the delivery thread
+   */
+  public ReceiveBuffer(int highWatermark, int lowWatermark, int policy, boolean paused, int deviceId, TransportReader.Listener listener) {
+    this.highWatermark = highWatermark;
+    this.lowWatermark = Math.min(lowWatermark, highWatermark);
+    this.policy = policy;
+    this.paused = paused;
+    this.listener = listener;
+    this.thread = new Thread(this, "SerialDelivery-" + deviceId);
+  }
+
+  /**
+   * @param name the overflowPolicy open option
+   * @return the matching POLICY constant
+   * @throws JSONException if the policy is unknown
+   */
+  public static int parsePolicy(String name) throws JSONException {
+    switch (name) {
+      case "block":
+        return POLICY_BLOCK;
+      case "dropOldest":
+        return POLICY_DROP_OLDEST;
+      case "dropNewest":
+        return POLICY_DROP_NEWEST;
+      default:
+        throw new JSONException("Unknown overflow policy: " + name);
+    }
+  }
+
+  public void start() {
+    thread.start();
+  }
+
+  /**
+   * Stop the delivery thread, what is buffered is delivered first unless paused
+   */
+  public synchronized void stop() {
+    running = false;
+    unblock();
+    notifyAll();
+  }
+
+  public synchronized void setPaused(boolean paused) {
+    this.paused = paused;
+    notifyAll();
+  }
+
+  /**
+   * Called by the reader before each read: with the block policy, holds it while the buffer is
+   * above the low watermark after reaching the high watermark, so no read is issued, whether
+   * the delivery is paused or not
+   */
+  @Override
+  public synchronized boolean awaitRoom(long timeoutMillis) {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    long remaining = timeoutMillis;
+    while (running && blocked && remaining > 0) {
+      try {
+        wait(remaining);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+      remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+    }
+    return !running || !blocked;
+  }
+
+  @Override
+  public void onNewData(byte[] data) {
+    synchronized (this) {
+      if (!running) {
+        return;
+      }
+      if (policy == POLICY_BLOCK) {
+        // the reader does not wait here, it holds its next read in awaitRoom
+        if (!blocked && bufferedBytes + data.length >= highWatermark) {
+          highWatermarkHits++;
+          blocked = true;
+          blockStart = System.nanoTime();
+        }
+      } else if (bufferedBytes + data.length > highWatermark) {
+        highWatermarkHits++;
+        if (policy == POLICY_DROP_OLDEST) {
+          while (!chunks.isEmpty() && bufferedBytes + data.length > highWatermark) {
+            byte[] dropped = chunks.pollFirst();
+            bufferedBytes -= dropped.length;
+            droppedBytes += dropped.length;
+            droppedChunks++;
+          }
+        } else {
+          droppedBytes += data.length;
+          droppedChunks++;
+          return;
+        }
+      }
+      chunks.addLast(data);
+      bufferedBytes += data.length;
+      notifyAll();
+    }
+  }
+
+  /**
+   * Let the reader go on, with the lock held
+   */
+  private void unblock() {
+    if (blocked) {
+      blocked = false;
+      blockedNanos += System.nanoTime() - blockStart;
+    }
+  }
+
+  @Override
+  public void onRunError(Exception e) {
+    listener.onRunError(e);
+  }
+
+  @Override
+  public void run() {
+    while (true) {
+      byte[] data;
+      synchronized (this) {
+        while (running && (paused || chunks.isEmpty())) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            running = false;
+          }
+        }
+        if (!running && (paused || chunks.isEmpty())) {
+          break;
+        }
+        data = chunks.pollFirst();
+        bufferedBytes -= data.length;
+        if (blocked && bufferedBytes <= lowWatermark) {
+          unblock();
+          notifyAll();
+        }
+      }
+      listener.onNewData(data);
+    }
+    Log.d(TAG, "Delivery stopped: " + thread.getName());
+  }
+
+  public JSONObject toJSON() {
+    JSONObject json = new JSONObject();
+    synchronized (this) {
+      try {
+        json.put("bufferedBytes", bufferedBytes);
+        json.put("paused", paused);
+        json.put("highWatermarkHits", highWatermarkHits);
+        json.put("droppedBytes", droppedBytes);
+        json.put("droppedChunks", droppedChunks);
+        long blockedFor = blocked ? System.nanoTime() - blockStart : 0;
+        json.put("blockedMillis", TimeUnit.NANOSECONDS.toMillis(blockedNanos + blockedFor));
+      } catch (JSONException ignored) {}
+    }
+    return json;
+  }
+}
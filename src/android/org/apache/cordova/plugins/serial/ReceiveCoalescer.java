@@ -0,0 +1,149 @@
+package org.apache.cordova.plugins.serial;
+
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accumulates the chunks read from a device and hands them over in batches, either when
+ * maxBytes are buffered or maxDelayMillis after the first byte of the batch was buffered.
+ * With both limits at 0 every chunk is handed over as it comes.
+ */
+public class ReceiveCoalescer {
+
+  /**
+   * Receives the batches
+   */
+  public interface Sink {
+    void onData(byte[] data);
+  }
+
+  private final int maxBytes;
+  private final int maxDelayMillis;
+  private final ScheduledExecutorService scheduler;
+  private final Sink sink;
+  // pending bytes of the current batch
+  private byte[] buffer;
+  private int length = 0;
+  private ScheduledFuture<?> pendingFlush = null;
+  // counters
+  private long chunks = 0;
+  private long flushes = 0;
+  private long flushedBytes = 0;
+  private long thresholdFlushes = 0;
+  private long windowFlushes = 0;
+
+  private final Runnable flushByWindow = new Runnable() {
+    public void run() {
+      synchronized (ReceiveCoalescer.this) {
+        pendingFlush = null;
+        if (length > 0) {
+          windowFlushes++;
+          flushBuffer();
+        }
+      }
+    }
+  };
+
+  /**
+   * @param maxBytes flush once this many bytes are buffered, 0 to disable
+   * @param maxDelayMillis flush this long after the first byte of a batch, 0 to disable
+   * @param scheduler runs the time based flushes
+   * @param sink receives the batches
+   */
+  public ReceiveCoalescer(int maxBytes, int maxDelayMillis, ScheduledExecutorService scheduler, Sink sink) {
+    this.maxBytes = Math.max(maxBytes, 0);
+    this.maxDelayMillis = Math.max(maxDelayMillis, 0);
+    this.scheduler = scheduler;
+    this.sink = sink;
+    this.buffer = new byte[this.maxBytes > 0 ? this.maxBytes : 4096];
+  }
+
+  public boolean isEnabled() {
+    return maxBytes > 0 || maxDelayMillis > 0;
+  }
+
+  /**
+   * Add a chunk read from the device, may flush the batch
+   * @param data the bytes read
+   */
+  public synchronized void add(byte[] data) {
+    chunks++;
+    if (!isEnabled()) {
+      flushes++;
+      flushedBytes += data.length;
+      sink.onData(data);
+      return;
+    }
+    if (data.length == 0) {
+      return;
+    }
+    if (length + data.length > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + data.length));
+    }
+    System.arraycopy(data, 0, buffer, length, data.length);
+    boolean firstBytes = length == 0;
+    length += data.length;
+
+    if (maxBytes > 0 && length >= maxBytes) {
+      thresholdFlushes++;
+      flushBuffer();
+    } else if (firstBytes && maxDelayMillis > 0) {
+      pendingFlush = scheduler.schedule(flushByWindow, maxDelayMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Hand over whatever is buffered, used when the reader stops
+   */
+  public synchronized void flush() {
+    if (length > 0) {
+      flushBuffer();
+    }
+  }
+
+  private void flushBuffer() {
+    if (pendingFlush != null) {
+      pendingFlush.cancel(false);
+      pendingFlush = null;
+    }
+    byte[] data = Arrays.copyOf(buffer, length);
+    length = 0;
+    flushes++;
+    flushedBytes += data.length;
+    sink.onData(data);
+  }
+
+  public int getMaxBytes() {
+    return maxBytes;
+  }
+
+  public int getMaxDelayMillis() {
+    return maxDelayMillis;
+  }
+
+  public synchronized long getChunks() {
+    return chunks;
+  }
+
+  public synchronized long getFlushes() {
+    return flushes;
+  }
+
+  public synchronized long getFlushedBytes() {
+    return flushedBytes;
+  }
+
+  public synchronized long getThresholdFlushes() {
+    return thresholdFlushes;
+  }
+
+  public synchronized long getWindowFlushes() {
+    return windowFlushes;
+  }
+
+  public synchronized double getAverageBatchSize() {
+    return flushes > 0 ? (double) flushedBytes / flushes : 0;
+  }
+}
@@ -0,0 +1,220 @@
+package org.apache.cordova.plugins.serial;
+
+import com.hoho.android.usbserial.driver.UsbSerialPort;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SerialTransport} of a virtual device replaying the received bytes of capture files
+ * written by {@link CaptureWriter}, so an app can be load-tested without hardware. The records
+ * are returned by {@link #read} at their original timing divided by speed, or as fast as they
+ * are read with a speed of 0. Written bytes are discarded.
+ */
+public class ReplayTransport implements SerialTransport {
+
+  private static final int MAGIC = ('S' << 24) | ('C' << 16) | ('A' << 8) | 'P';
+  private static final int FILE_HEADER_BYTES = 26;
+
+  private final List<File> files;
+  private final double speed;
+  private final boolean loop;
+  // position in the files
+  private int fileIndex = 0;
+  private DataInputStream input = null;
+  // record being returned, from pendingOffset
+  private byte[] pending = new byte[0];
+  private int pendingOffset = 0;
+  private int pendingLength = 0;
+  private long pendingDueNanos = 0;
+  // capture time of the first record and local time it was replayed at
+  private long firstRecordNanos = -1;
+  private long replayStartNanos = 0;
+  private boolean finished = false;
+  private boolean closed = false;
+  // counters
+  private long records = 0;
+  private long bytes = 0;
+  private long lagNanos = 0;
+
+  /**
+   * @param files the capture files, in capture order
+   * @param speed replay speed factor, 1 for the original timing, 0 as fast as possible
+   * @param loop start again from the first file at the end of the last one
+   * @throws IOException if a file is missing or is not a capture file
+   */
+  public ReplayTransport(List<File> files, double speed, boolean loop) throws IOException {
+    if (files.isEmpty()) {
+      throw new IOException("No capture file.");
+    }
+    for (File file : files) {
+      if (!file.isFile()) {
+        throw new IOException("Capture file not found: " + file);
+      }
+    }
+    this.files = files;
+    this.speed = Math.max(speed, 0);
+    this.loop = loop;
+    openFile(0);
+  }
+
+  private void openFile(int index) throws IOException {
+    if (input != null) {
+      input.close();
+    }
+    fileIndex = index;
+    input = new DataInputStream(new BufferedInputStream(new FileInputStream(files.get(index))));
+    if (input.readInt() != MAGIC) {
+      throw new IOException("Not a capture file: " + files.get(index));
+    }
+    input.skipBytes(FILE_HEADER_BYTES - 4);
+  }
+
+  /**
+   * Load the next received record into pending
+   * @return false at the end of the last file
+   */
+  private boolean nextRecord() throws IOException {
+    while (true) {
+      long nanos;
+      byte direction;
+      int length;
+      try {
+        nanos = input.readLong();
+        direction = input.readByte();
+        length = input.readInt();
+      } catch (EOFException e) {
+        if (fileIndex + 1 < files.size()) {
+          openFile(fileIndex + 1);
+          continue;
+        }
+        if (!loop) {
+          return false;
+        }
+        openFile(0);
+        firstRecordNanos = -1;
+        continue;
+      }
+      if (direction != CaptureWriter.IN) {
+        input.skipBytes(length);
+        continue;
+      }
+      if (pending.length < length) {
+        pending = new byte[length];
+      }
+      input.readFully(pending, 0, length);
+      pendingOffset = 0;
+      pendingLength = length;
+      if (firstRecordNanos < 0) {
+        firstRecordNanos = nanos;
+        replayStartNanos = System.nanoTime();
+      }
+      pendingDueNanos = speed > 0 ? replayStartNanos + (long) ((nanos - firstRecordNanos) / speed) : 0;
+      return true;
+    }
+  }
+
+  @Override
+  public synchronized int read(byte[] dest, int timeoutMillis) throws IOException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    if (closed) {
+      throw new IOException("Connection closed");
+    }
+    if (pendingOffset == pendingLength && !finished && !nextRecord()) {
+      finished = true;
+    }
+    // wait for the record to be due, or for the timeout if the replay is over
+    while (true) {
+      long now = System.nanoTime();
+      long due = finished ? Long.MAX_VALUE : pendingDueNanos;
+      if (due <= now) {
+        break;
+      }
+      long wait = timeoutMillis > 0 ? Math.min(due, deadline) - now : due - now;
+      if (wait <= 0) {
+        return 0;
+      }
+      try {
+        TimeUnit.NANOSECONDS.timedWait(this, wait);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted.");
+      }
+      if (closed) {
+        throw new IOException("Connection closed");
+      }
+    }
+    if (pendingOffset == 0 && pendingDueNanos > 0) {
+      lagNanos = System.nanoTime() - pendingDueNanos;
+    }
+    int len = Math.min(pendingLength - pendingOffset, dest.length);
+    System.arraycopy(pending, pendingOffset, dest, 0, len);
+    pendingOffset += len;
+    if (pendingOffset == pendingLength) {
+      records++;
+    }
+    bytes += len;
+    return len;
+  }
+
+  @Override
+  public void write(byte[] src, int length, int timeoutMillis) throws IOException {
+    if (closed) {
+      throw new IOException("Connection closed");
+    }
+  }
+
+  @Override
+  public void setParameters(int baudRate, int dataBits, int stopBits, int parity) {}
+
+  @Override
+  public void setDTR(boolean value) {}
+
+  @Override
+  public void setRTS(boolean value) {}
+
+  @Override
+  public void setFlowControl(UsbSerialPort.FlowControl flowControl) {}
+
+  @Override
+  public int getReadPacketSize() {
+    return 0;
+  }
+
+  @Override
+  public int getWritePacketSize() {
+    return 0;
+  }
+
+  public synchronized boolean isFinished() {
+    return finished;
+  }
+
+  public synchronized long getRecords() {
+    return records;
+  }
+
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * @return how late the last record was returned compared to its replay time, grows when the
+   *   app does not keep up with the replay speed
+   */
+  public synchronized long getLagMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(lagNanos);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    closed = true;
+    notifyAll();
+    input.close();
+  }
+}
@@ -1,35 +1,31 @@
 package org.apache.cordova.plugins.serial;
 
 import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.hardware.usb.UsbDevice;
-import android.hardware.usb.UsbDeviceConnection;
 import android.hardware.usb.UsbManager;
+import android.os.Build;
 import android.util.Base64;
 import android.util.Log;
-import com.hoho.android.usbserial.driver.CdcAcmSerialDriver;
-import com.hoho.android.usbserial.driver.Ch34xSerialDriver;
-import com.hoho.android.usbserial.driver.Cp21xxSerialDriver;
-import com.hoho.android.usbserial.driver.FtdiSerialDriver;
-import com.hoho.android.usbserial.driver.ProbeTable;
-import com.hoho.android.usbserial.driver.ProlificSerialDriver;
 import com.hoho.android.usbserial.driver.UsbSerialDriver;
-import com.hoho.android.usbserial.driver.UsbSerialPort;
-import com.hoho.android.usbserial.driver.UsbSerialProber;
-import com.hoho.android.usbserial.util.SerialInputOutputManager;
+import java.io.File;
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
-import javax.security.auth.callback.Callback;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.cordova.CallbackContext;
 import org.apache.cordova.CordovaPlugin;
 import org.apache.cordova.PluginResult;
@@ -47,56 +43,111 @@ public class Serial extends CordovaPlugin {
   private final String TAG = Serial.class.getSimpleName();
   // actions definitions
   private static final String ACTION_REQUEST_PERMISSION = "requestPermission";
+  private static final String ACTION_REQUEST_PERMISSION_ALL = "requestPermissionAll";
   private static final String ACTION_OPEN = "openSerial";
   private static final String ACTION_READ = "readSerial";
   private static final String ACTION_WRITE = "writeSerial";
   private static final String ACTION_WRITE_HEX = "writeSerialHex";
+  private static final String ACTION_WRITE_BINARY = "writeSerialBinary";
   private static final String ACTION_CLOSE = "closeSerial";
   private static final String ACTION_READ_CALLBACK = "registerReadCallback";
   private static final String ACTION_GET_DEVICES = "getDevices";
   private static final String ACTION_READ_BY_DEVICE_ID = "readSerialByDeviceId";
   private static final String ACTION_WRITE_BY_DEVICE_ID = "writeSerialByDeviceId";
+  private static final String ACTION_WRITE_BINARY_BY_DEVICE_ID = "writeSerialBinaryByDeviceId";
   private static final String ACTION_OPEN_BY_DEVICE_ID = "openSerialByDeviceId";
   private static final String ACTION_REGISTER_DETACH_CALLBACK = "registerDetachCallback";
+  private static final String ACTION_CLOSE_BY_DEVICE_ID = "closeSerialByDeviceId";
+  private static final String ACTION_GET_COALESCING_STATS = "getCoalescingStats";
+  private static final String ACTION_GET_FRAMING_STATS = "getFramingStats";
+  private static final String ACTION_TRANSACT = "transact";
+  private static final String ACTION_READ_EXACTLY = "readExactly";
+  private static final String ACTION_REGISTER_DEVICE_CHANGE_CALLBACK = "registerDeviceChangeCallback";
+  private static final String ACTION_GET_STATS = "getStats";
+  private static final String ACTION_START_CAPTURE = "startCapture";
+  private static final String ACTION_STOP_CAPTURE = "stopCapture";
+  private static final String ACTION_OPEN_REPLAY = "openReplay";
+  private static final String ACTION_PAUSE_READING = "pauseReading";
+  private static final String ACTION_RESUME_READING = "resumeReading";
+  private static final String ACTION_REGISTER_DRIVERS = "registerDrivers";
   // UsbManager instance to deal with permission and opening
   private UsbManager manager;
-  // The current driver that handle the serial port
-  private UsbSerialDriver driver;
-  // The serial port that will be used in this plugin
-  private UsbSerialPort port;
-  // Read buffer, and read params
-  private static final int READ_WAIT_MILLIS = 200;
-  private static final int BUFSIZ = 4096;
-  private final ByteBuffer mReadBuffer = ByteBuffer.allocate(BUFSIZ);
-  // Connection info
-  private int previousOpenDeviceId = -1;
-  private int baudRate;
-  private int dataBits;
-  private int stopBits;
-  private int parity;
-  private boolean setDTR;
-  private boolean setRTS;
-  private boolean sleepOnPause;
-
-  private HashMap<Integer, DeviceConnection> deviceConnections = new HashMap<>();
+  // Default time requestPermissionAll waits for the answer of the user for one device
+  private static final int PERMISSION_TIMEOUT_MILLIS = 60000;
+  // Default size of a capture file before rotation
+  private static final long CAPTURE_FILE_BYTES = 16 * 1024 * 1024;
+  // Delay before the second try to reopen a reattached device, doubled on each further try
+  private static final long RECONNECT_BACKOFF_MILLIS = 100;
+  private static final long RECONNECT_MAX_BACKOFF_MILLIS = 2000;
+  // Returned by every read that got no data, never written to
+  private static final byte[] EMPTY_DATA = new byte[0];
+  // Device used by the actions that take no deviceId: the last one permission was requested for
+  private volatile int currentDeviceId = -1;
+
+  // Serial sessions by device id and port index, each one keeps its own driver, port and line parameters
+  private final ConcurrentHashMap<Long, DeviceConnection> deviceConnections = new ConcurrentHashMap<>();
+  // Id of the next virtual device, counting down from -2 as -1 means no device
+  private final AtomicInteger nextVirtualDeviceId = new AtomicInteger(-2);
+  // Sessions of detached devices opened with autoReconnect, waiting for the device to come back
+  private final CopyOnWriteArrayList<DeviceConnection> detachedSessions = new CopyOnWriteArrayList<>();
   // callback that will be used to send back data to the cordova app
-  private CallbackContext readCallback;
-  private CallbackContext detachCallback;
+  private volatile CallbackContext readCallback;
+  private volatile CallbackContext detachCallback;
+  private volatile CallbackContext deviceChangeCallback;
+  // Attached devices, kept up to date by the attach/detach receiver
+  private final DeviceRegistry registry = new DeviceRegistry();
+  private UsbAttachReceiver attachReceiver;
+  // Finds the drivers of the attached devices, remembering the drivers found across restarts
+  private DriverProber prober;
+  // runs the time based flushes of the received data
+  private final ScheduledExecutorService mScheduler = Executors.newSingleThreadScheduledExecutor();
 
-  // I/O manager to handle new incoming serial data
-  private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
-  private SerialInputOutputManager mSerialIoManager;
-  private final SerialInputOutputManager.Listener mListener = new SerialInputOutputManager.Listener() {
-    @Override
-    public void onRunError(Exception e) {
-      // Log.d(TAG, "Runner stopped.");
+  /**
+   * Fill the device registry and keep it up to date with a receiver living as long as the plugin
+   * @see org.apache.cordova.CordovaPlugin#pluginInitialize()
+   */
+  @Override
+  protected void pluginInitialize() {
+    // get UsbManager from Android
+    manager = (UsbManager) cordova.getActivity().getSystemService(Context.USB_SERVICE);
+    if (manager == null) {
+      Log.e(TAG, "UsbManager is null");
+      return;
     }
+    prober = new DriverProber(cordova.getActivity().getSharedPreferences("serial-probe-cache", Context.MODE_PRIVATE));
+    registry.setListener(
+      new DeviceRegistry.Listener() {
+        @Override
+        public void onAttached(UsbDevice device, JSONObject descriptor) {
+          sendDeviceChange("attached", descriptor);
+          onDeviceAttached(device);
+        }
 
-    @Override
-    public void onNewData(final byte[] data) {
-      Serial.this.updateReceivedData(data);
+        @Override
+        public void onDetached(UsbDevice device, JSONObject descriptor) {
+          onDeviceDetached(device, descriptor);
+          sendDeviceChange("detached", descriptor);
+        }
+      }
+    );
+    registry.refresh(manager.getDeviceList());
+    attachReceiver = new UsbAttachReceiver(registry);
+    registerExportedReceiver(attachReceiver, UsbAttachReceiver.createFilter());
+  }
+
+  /**
+   * Register a receiver for system broadcasts. Android 13 wants the export flag spelled out, the
+   * three-argument form does not exist before Android 8.
+   * @param receiver the receiver
+   * @param filter the actions it listens to
+   */
+  private void registerExportedReceiver(BroadcastReceiver receiver, IntentFilter filter) {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+      cordova.getActivity().registerReceiver(receiver, filter, Context.RECEIVER_EXPORTED);
+    } else {
+      cordova.getActivity().registerReceiver(receiver, filter);
     }
-  };
+  }
 
   /**
    * Overridden execute method
@@ -115,6 +166,12 @@ public class Serial extends CordovaPlugin {
       requestPermission(opts, callbackContext);
       return true;
     }
+    // request permission for every matching device and open them
+    else if (ACTION_REQUEST_PERMISSION_ALL.equals(action)) {
+      JSONObject opts = arg_object.has("opts") ? arg_object.getJSONObject("opts") : new JSONObject();
+      requestPermissionAll(opts, callbackContext);
+      return true;
+    }
     // open serial port
     else if (ACTION_OPEN.equals(action)) {
       JSONObject opts = arg_object.has("opts") ? arg_object.getJSONObject("opts") : new JSONObject();
@@ -133,6 +190,12 @@ public class Serial extends CordovaPlugin {
       writeSerialHex(data, callbackContext);
       return true;
     }
+    // write binary data to the serial port, the ArrayBuffer arrives base64 encoded
+    else if (ACTION_WRITE_BINARY.equals(action)) {
+      byte[] data = Base64.decode(args.getString(0), Base64.DEFAULT);
+      writeSerialBinary(data, callbackContext);
+      return true;
+    }
     // read on the serial port
     else if (ACTION_READ.equals(action)) {
       readSerial(callbackContext);
@@ -162,13 +225,73 @@ public class Serial extends CordovaPlugin {
       JSONObject opts = arg_object.has("opts") ? arg_object.getJSONObject("opts") : new JSONObject();
       writeSerialByDeviceId(opts, callbackContext);
       return true;
+    } else if (ACTION_WRITE_BINARY_BY_DEVICE_ID.equals(action)) {
+      JSONObject opts = arg_object.has("opts") ? arg_object.getJSONObject("opts") : new JSONObject();
+      byte[] data = Base64.decode(args.getString(1), Base64.DEFAULT);
+      writeSerialByDeviceId(opts, data, callbackContext);
+      return true;
     } else if (ACTION_OPEN_BY_DEVICE_ID.equals(action)) {
       JSONObject opts = arg_object.has("opts") ? arg_object.getJSONObject("opts") : new JSONObject();
       openSerialByDeviceId(opts, callbackContext);
       return true;
+    } else if (ACTION_CLOSE_BY_DEVICE_ID.equals(action)) {
+      JSONObject opts = arg_object.has("opts") ? arg_object.getJSONObject("opts") : new JSONObject();
+      closeSerialByDeviceId(opts, callbackContext);
+      return true;
+    } else if (ACTION_GET_COALESCING_STATS.equals(action)) {
+      JSONObject opts = arg_object.has("opts") ? arg_object.getJSONObject("opts") : new JSONObject();
+      getCoalescingStats(opts, callbackContext);
+      return true;
+    } else if (ACTION_GET_FRAMING_STATS.equals(action)) {
+      JSONObject opts = arg_object.has("opts") ? arg_object.getJSONObject("opts") : new JSONObject();
+      getFramingStats(opts, callbackContext);
+      return true;
+    } else if (ACTION_GET_STATS.equals(action)) {
+      JSONObject opts = arg_object.has("opts") ? arg_object.getJSONObject("opts") : new JSONObject();
+      getStats(opts, callbackContext);
+      return true;
+    } else if (ACTION_START_CAPTURE.equals(action)) {
+      JSONObject opts = arg_object.has("opts") ? arg_object.getJSONObject("opts") : new JSONObject();
+      startCapture(opts, callbackContext);
+      return true;
+    } else if (ACTION_STOP_CAPTURE.equals(action)) {
+      JSONObject opts = arg_object.has("opts") ? arg_object.getJSONObject("opts") : new JSONObject();
+      stopCapture(opts, callbackContext);
+      return true;
+    } else if (ACTION_OPEN_REPLAY.equals(action)) {
+      JSONObject opts = arg_object.has("opts") ? arg_object.getJSONObject("opts") : new JSONObject();
+      openReplay(opts, callbackContext);
+      return true;
+    } else if (ACTION_PAUSE_READING.equals(action)) {
+      JSONObject opts = arg_object.has("opts") ? arg_object.getJSONObject("opts") : new JSONObject();
+      setReadingPaused(opts, true, callbackContext);
+      return true;
+    } else if (ACTION_RESUME_READING.equals(action)) {
+      JSONObject opts = arg_object.has("opts") ? arg_object.getJSONObject("opts") : new JSONObject();
+      setReadingPaused(opts, false, callbackContext);
+      return true;
+    } else if (ACTION_REGISTER_DRIVERS.equals(action)) {
+      JSONObject opts = arg_object.has("opts") ? arg_object.getJSONObject("opts") : new JSONObject();
+      registerDrivers(opts, callbackContext);
+      return true;
+    } else if (ACTION_TRANSACT.equals(action)) {
+      JSONObject opts = arg_object.has("opts") ? arg_object.getJSONObject("opts") : new JSONObject();
+      // the request is either a binary argument or the data string of opts
+      byte[] data = args.length() > 1 && !args.isNull(1)
+        ? Base64.decode(args.getString(1), Base64.DEFAULT)
+        : opts.optString("data").getBytes(StandardCharsets.UTF_8);
+      transact(opts, data, callbackContext);
+      return true;
+    } else if (ACTION_READ_EXACTLY.equals(action)) {
+      JSONObject opts = arg_object.has("opts") ? arg_object.getJSONObject("opts") : new JSONObject();
+      readExactly(opts, callbackContext);
+      return true;
     } else if (ACTION_REGISTER_DETACH_CALLBACK.equals(action)) {
       registerDetachCallback(callbackContext);
       return true;
+    } else if (ACTION_REGISTER_DEVICE_CHANGE_CALLBACK.equals(action)) {
+      registerDeviceChangeCallback(callbackContext);
+      return true;
     }
     // the action doesn't exist
     return false;
@@ -190,182 +313,280 @@ public class Serial extends CordovaPlugin {
    * @param callbackContext
    */
   private void openSerialByDeviceId(final JSONObject opts, final CallbackContext callbackContext) {
-    cordova
-      .getThreadPool()
-      .execute(
-        new Runnable() {
-          public void run() {
-            if (driver == null) {
+    executeOnLane(
+      opts,
+      new Runnable() {
+        public void run() {
+          try {
+            DeviceConnection deviceConnection = getDeviceConnection(opts);
+
+            if (deviceConnection == null || deviceConnection.getDriver() == null) {
               callbackContext.error("Request permissions before attempting opening port");
               return;
             }
-            try {
-              int deviceId = opts.has("deviceId") ? opts.getInt("deviceId") : 1013;
-              UsbDevice device = findDeviceWithId(deviceId);
-
-              UsbDeviceConnection connection = manager.openDevice(device);
-
-              if (connection != null) {
-                // get first port and open it
-                port = driver.getPorts().get(0);
-
-                // get connection params or the default values
-                baudRate = opts.has("baudRate") ? opts.getInt("baudRate") : 115200;
-                dataBits = opts.has("dataBits") ? opts.getInt("dataBits") : UsbSerialPort.DATABITS_8;
-                stopBits = opts.has("stopBits") ? opts.getInt("stopBits") : UsbSerialPort.STOPBITS_1;
-                parity = opts.has("parity") ? opts.getInt("parity") : UsbSerialPort.PARITY_NONE;
-                setDTR = opts.has("dtr") && opts.getBoolean("dtr");
-                setRTS = opts.has("rts") && opts.getBoolean("rts");
-                // Sleep On Pause defaults to true
-                sleepOnPause = !opts.has("sleepOnPause") || opts.getBoolean("sleepOnPause");
-
-                port.open(connection);
-                port.setParameters(baudRate, dataBits, stopBits, parity);
-                if (setDTR) port.setDTR(true);
-                if (setRTS) port.setRTS(true);
-
-                // Log.d(TAG, "Serial port opened!");
-                callbackContext.success("Serial port opened!");
-              } else {
-                // Log.d(TAG, "Cannot connect to the device!");
-                callbackContext.error("Cannot connect to the device!");
-              }
 
-              onDeviceStateChange();
-            } catch (IOException | JSONException e) {
-              // deal with error
-              // Log.d(TAG, Objects.requireNonNull(e.getMessage()));
-              callbackContext.error(e.getMessage());
+            if (deviceConnection.isOpen()) {
+              // Log.d(TAG, "Device already open");
+              callbackContext.success(openResultToJSONObj(deviceConnection));
+              return;
+            }
+
+            deviceConnection.setParameters(opts, 115200);
+            if (deviceConnection.open(manager)) {
+              // Log.d(TAG, "Serial port opened!");
+              callbackContext.success(openResultToJSONObj(deviceConnection));
+            } else {
+              // Log.d(TAG, "Cannot connect to the device!");
+              callbackContext.error("Cannot connect to the device!");
             }
+
+            onDeviceStateChange(deviceConnection);
+          } catch (IOException | JSONException e) {
+            // deal with error
+            // Log.d(TAG, Objects.requireNonNull(e.getMessage()));
+            callbackContext.error(e.getMessage());
           }
         }
-      );
+      }
+    );
   }
 
   /**
-   * Overridden execute method
+   * Send the descriptors of the attached devices, cached by the {@link DeviceRegistry}
    * @param callbackContext the cordova {@link CallbackContext}
-   * @return true if the action exists, false otherwise
-   * @throws JSONException if the args parsing fails
    */
   private void getDevices(final CallbackContext callbackContext) {
-    // Get the USB service
-    manager = (UsbManager) cordova.getActivity().getSystemService(Context.USB_SERVICE);
-
     if (manager == null) {
       Log.e(TAG, "UsbManager is null");
       callbackContext.error("UsbManager is unavailable");
       return;
     }
 
-    HashMap<String, UsbDevice> deviceList = manager.getDeviceList();
-
-    if (deviceList.isEmpty()) {
+    if (registry.isEmpty()) {
       // Log.d(TAG, "No USB devices found");
       callbackContext.error("No USB devices found");
       return;
     }
 
-    // Create a JSON array to hold device information
-    JSONArray devicesArray = new JSONArray();
-
-    Iterator<UsbDevice> deviceIterator = deviceList.values().iterator();
-
-    // Iterate through each device and add its info to the JSON array
-    while (deviceIterator.hasNext()) {
-      UsbDevice usbDevice = deviceIterator.next();
-
-      try {
-        JSONObject json = new JSONObject();
-
-        json.put("deviceName", usbDevice.getDeviceName());
-        json.put("vendorId", usbDevice.getVendorId());
-        json.put("productId", usbDevice.getProductId());
-        json.put("deviceClass", usbDevice.getDeviceClass());
-        json.put("deviceSubclass", usbDevice.getDeviceSubclass());
-        json.put("deviceProtocol", usbDevice.getDeviceProtocol());
-        json.put("version", usbDevice.getVersion());
-        json.put("interfaces", usbDevice.getInterfaceCount());
-        json.put("deviceId", usbDevice.getDeviceId());
-        // Add the device info to the JSON array
-        devicesArray.put(json);
-      } catch (JSONException e) {
-        Log.e(TAG, "Error creating JSON object for USB device", e);
-        callbackContext.error("Error creating JSON object for USB device");
-        return;
-      }
-    }
-
     // Send the JSON array back as the success callback
-    callbackContext.success(devicesArray);
+    callbackContext.success(registry.getDescriptors());
   }
 
-  private void checkConnectionsList() {
-    if (deviceConnections.isEmpty()) {
+  /**
+   * Close the session of a detached device and tell the detach callback. The session is
+   * forgotten, or kept until the device is reattached when opened with autoReconnect.
+   * @param device the detached device
+   * @param descriptor its serialized descriptor
+   */
+  private void onDeviceDetached(UsbDevice device, JSONObject descriptor) {
+    boolean removed = false;
+    boolean reconnecting = false;
+    // the sessions of every port of the device
+    for (DeviceConnection deviceConnection : deviceConnections.values()) {
+      if (deviceConnection.getDevice() == null || deviceConnection.getDeviceId() != device.getDeviceId()) {
+        continue;
+      }
+      if (!deviceConnections.remove(deviceConnection.getSessionKey(), deviceConnection)) {
+        continue;
+      }
+      removed = true;
+      if (deviceConnection.detach()) {
+        detachedSessions.add(deviceConnection);
+        reconnecting = true;
+      }
+    }
+    if (!removed) {
       return;
     }
-    Log.d(TAG, "Device connections: " + deviceConnections.size());
-
-    manager = (UsbManager) cordova.getActivity().getSystemService(Context.USB_SERVICE);
+    Log.d(TAG, "Device removed: " + device.getDeviceId());
 
-    HashMap<String, UsbDevice> deviceList = manager.getDeviceList();
-
-    // List to store device IDs that need to be removed
-    List<Integer> devicesToRemove = new ArrayList<>();
-
-    if (deviceList.isEmpty()) {
-      for (DeviceConnection deviceConnection : deviceConnections.values()) {
-        UsbDevice device = deviceConnection.getDevice();
-        UsbDeviceConnection connection = deviceConnection.getConnection();
-
-        if (connection != null) {
-          connection.close();
-        }
+    CallbackContext callback = detachCallback;
+    if (callback != null) {
+      JSONObject returnObj = new JSONObject();
+      addProperty(returnObj, "device", descriptor);
+      addProperty(returnObj, "reconnecting", reconnecting);
 
-        // Add the device ID to the list for removal
-        devicesToRemove.add(device.getDeviceId());
+      PluginResult pluginResult = new PluginResult(PluginResult.Status.OK, returnObj);
+      pluginResult.setKeepCallback(true);
+      callback.sendPluginResult(pluginResult);
+    }
+  }
 
-        JSONObject returnObj = new JSONObject();
-        addProperty(returnObj, "device", deviceToJSONObj(device));
+  /**
+   * Reconnect the detached sessions of an attached device, if any. Without permission for the
+   * device the sessions wait for requestPermission.
+   * @param device the attached device
+   */
+  private void onDeviceAttached(UsbDevice device) {
+    if (detachedSessions.isEmpty() || !manager.hasPermission(device)) {
+      return;
+    }
+    for (DeviceConnection deviceConnection : takeDetachedSessions(device)) {
+      reconnect(deviceConnection, device);
+    }
+  }
 
-        PluginResult pluginResult = new PluginResult(PluginResult.Status.OK, returnObj);
-        pluginResult.setKeepCallback(true);
-        detachCallback.sendPluginResult(pluginResult);
+  /**
+   * @param device an attached device
+   * @return the detached sessions of the ports of the device, removed from the detached sessions
+   */
+  private List<DeviceConnection> takeDetachedSessions(UsbDevice device) {
+    List<DeviceConnection> taken = new ArrayList<>();
+    // the ports of one detached device, identical devices are told apart by their previous id
+    int previousDeviceId = -1;
+    for (DeviceConnection deviceConnection : detachedSessions) {
+      if (!deviceConnection.matches(device)) {
+        continue;
       }
-    } else {
-      for (DeviceConnection deviceConnection : deviceConnections.values()) {
-        UsbDevice device = deviceConnection.getDevice();
+      if (taken.isEmpty()) {
+        previousDeviceId = deviceConnection.getDeviceId();
+      } else if (deviceConnection.getDeviceId() != previousDeviceId) {
+        continue;
+      }
+      if (detachedSessions.remove(deviceConnection)) {
+        taken.add(deviceConnection);
+      }
+    }
+    return taken;
+  }
 
-        if (!deviceList.containsValue(device)) {
-          UsbDeviceConnection connection = deviceConnection.getConnection();
+  /**
+   * Bind a detached session to its reattached device under the new device id, then reopen it
+   * on its lane with its cached line parameters and framing
+   * @param deviceConnection the detached session
+   * @param device the reattached device
+   */
+  private void reconnect(DeviceConnection deviceConnection, UsbDevice device) {
+    int previousDeviceId = deviceConnection.getDeviceId();
+    try {
+      deviceConnection.reattach(device);
+    } catch (IOException e) {
+      sendReconnectEvent("reconnectFailed", deviceConnection, previousDeviceId, 0, e.getMessage());
+      return;
+    }
+    deviceConnections.put(deviceConnection.getSessionKey(), deviceConnection);
+    if (currentDeviceId == previousDeviceId) {
+      currentDeviceId = device.getDeviceId();
+    }
+    reopen(deviceConnection, previousDeviceId, 1);
+  }
 
-          if (connection != null) {
-            connection.close();
+  /**
+   * Try to reopen a reattached session, the failed tries are retried with an exponential backoff
+   * as the device may not accept to be opened right after it was attached
+   * @param deviceConnection the reattached session
+   * @param previousDeviceId the id of the device before it was detached
+   * @param attempt the number of this try, from 1
+   */
+  private void reopen(final DeviceConnection deviceConnection, final int previousDeviceId, final int attempt) {
+    deviceConnection.execute(
+      new Runnable() {
+        public void run() {
+          // detached again in the meantime
+          if (deviceConnections.get(deviceConnection.getSessionKey()) != deviceConnection) {
+            return;
+          }
+          try {
+            if (deviceConnection.reopen(manager)) {
+              onDeviceStateChange(deviceConnection);
+            }
+            sendReconnectEvent("reconnected", deviceConnection, previousDeviceId, attempt, null);
+          } catch (IOException e) {
+            if (attempt >= deviceConnection.getReconnectAttempts()) {
+              // the session stays registered, closed, and can be opened again by the app
+              sendReconnectEvent("reconnectFailed", deviceConnection, previousDeviceId, attempt, e.getMessage());
+              return;
+            }
+            long delay = Math.min(RECONNECT_BACKOFF_MILLIS << (attempt - 1), RECONNECT_MAX_BACKOFF_MILLIS);
+            mScheduler.schedule(
+              new Runnable() {
+                public void run() {
+                  reopen(deviceConnection, previousDeviceId, attempt + 1);
+                }
+              },
+              delay,
+              TimeUnit.MILLISECONDS
+            );
           }
-
-          // Add the device ID to the list for removal
-          devicesToRemove.add(device.getDeviceId());
-
-          JSONObject returnObj = new JSONObject();
-          addProperty(returnObj, "device", deviceToJSONObj(device));
-
-          PluginResult pluginResult = new PluginResult(PluginResult.Status.OK, returnObj);
-          pluginResult.setKeepCallback(true);
-          detachCallback.sendPluginResult(pluginResult);
         }
       }
+    );
+  }
+
+  /**
+   * Tell the device change callback the outcome of the reconnection of a reattached device
+   * @param event "reconnected" or "reconnectFailed"
+   * @param deviceConnection the reattached session
+   * @param previousDeviceId the id of the device before it was detached
+   * @param attempts the number of tries to reopen the session
+   * @param error the reason of the failure, null on success
+   */
+  private void sendReconnectEvent(
+    String event,
+    DeviceConnection deviceConnection,
+    int previousDeviceId,
+    int attempts,
+    String error
+  ) {
+    Log.d(TAG, "Device " + previousDeviceId + " " + event + " as " + deviceConnection.getDeviceId());
+    CallbackContext callback = deviceChangeCallback;
+    if (callback != null) {
+      JSONObject returnObj = new JSONObject();
+      addProperty(returnObj, "event", event);
+      addProperty(returnObj, "device", registry.getDescriptor(deviceConnection.getDevice()));
+      addProperty(returnObj, "deviceId", deviceConnection.getDeviceId());
+      addProperty(returnObj, "portIndex", deviceConnection.getPortIndex());
+      addProperty(returnObj, "previousDeviceId", previousDeviceId);
+      addProperty(returnObj, "open", deviceConnection.isOpen());
+      addProperty(returnObj, "attempts", attempts);
+      // time from the detach of the device to the end of the reconnection
+      addProperty(returnObj, "reconnectMillis", (System.nanoTime() - deviceConnection.getDetachedNanos()) / 1e6);
+      if (error != null) {
+        addProperty(returnObj, "error", error);
+      }
+
+      PluginResult pluginResult = new PluginResult(PluginResult.Status.OK, returnObj);
+      pluginResult.setKeepCallback(true);
+      callback.sendPluginResult(pluginResult);
     }
+  }
 
-    // Remove devices from `deviceConnections` after iteration
-    for (int deviceId : devicesToRemove) {
-      deviceConnections.remove(deviceId);
-      Log.d(TAG, "Device removed: " + deviceId);
-      Log.d(TAG, "Device connections after d: " + deviceConnections.size());
+  /**
+   * Tell the device change callback that a device was attached or detached
+   * @param event "attached" or "detached"
+   * @param descriptor the serialized descriptor of the device
+   */
+  private void sendDeviceChange(String event, JSONObject descriptor) {
+    CallbackContext callback = deviceChangeCallback;
+    if (callback != null) {
+      JSONObject returnObj = new JSONObject();
+      addProperty(returnObj, "event", event);
+      addProperty(returnObj, "device", descriptor);
+
+      PluginResult pluginResult = new PluginResult(PluginResult.Status.OK, returnObj);
+      pluginResult.setKeepCallback(true);
+      callback.sendPluginResult(pluginResult);
     }
   }
 
+  /**
+   * Register the callback receiving the attached and detached devices
+   * @param callbackContext the cordova {@link CallbackContext}
+   */
+  private void registerDeviceChangeCallback(final CallbackContext callbackContext) {
+    deviceChangeCallback = callbackContext;
+
+    JSONObject returnObj = new JSONObject();
+    addProperty(returnObj, "registerDeviceChangeCallback", "true");
+
+    PluginResult pluginResult = new PluginResult(PluginResult.Status.OK, returnObj);
+    pluginResult.setKeepCallback(true);
+    callbackContext.sendPluginResult(pluginResult);
+  }
+
   /**
    * Request permission the the user for the app to use the USB/serial port
+   * @param opts a {@link JSONObject} containing the deviceId of an attached device, or a vid and pid
    * @param callbackContext the cordova {@link CallbackContext}
    */
   private void requestPermission(final JSONObject opts, final CallbackContext callbackContext) {
@@ -374,100 +595,73 @@ public class Serial extends CordovaPlugin {
       .execute(
         new Runnable() {
           public void run() {
-            // get UsbManager from Android
-            manager = (UsbManager) cordova.getActivity().getSystemService(Context.USB_SERVICE);
-            UsbSerialProber prober;
-
+            long probeStart = System.nanoTime();
+            Collection<UsbDevice> devices = registry.getDevices();
+            if (opts.has("deviceId")) {
+              UsbDevice device = registry.get(opts.optInt("deviceId"));
+              devices = device != null ? Collections.singletonList(device) : Collections.<UsbDevice>emptyList();
+            }
+            List<UsbSerialDriver> availableDrivers;
             if (opts.has("vid") && opts.has("pid")) {
-              ProbeTable customTable = new ProbeTable();
-              Object o_vid = opts.opt("vid"); //can be an integer Number or a hex String
-              Object o_pid = opts.opt("pid"); //can be an integer Number or a hex String
-              int vid = o_vid instanceof Number ? ((Number) o_vid).intValue() : Integer.parseInt((String) o_vid, 16);
-              int pid = o_pid instanceof Number ? ((Number) o_pid).intValue() : Integer.parseInt((String) o_pid, 16);
-              String driver = opts.has("driver") ? (String) opts.opt("driver") : "CdcAcmSerialDriver";
-
-              assert driver != null;
-              switch (driver) {
-                case "FtdiSerialDriver":
-                  customTable.addProduct(vid, pid, FtdiSerialDriver.class);
-                  break;
-                case "CdcAcmSerialDriver":
-                  customTable.addProduct(vid, pid, CdcAcmSerialDriver.class);
-                  break;
-                case "Cp21xxSerialDriver":
-                  customTable.addProduct(vid, pid, Cp21xxSerialDriver.class);
-                  break;
-                case "ProlificSerialDriver":
-                  customTable.addProduct(vid, pid, ProlificSerialDriver.class);
-                  break;
-                case "Ch34xSerialDriver":
-                  customTable.addProduct(vid, pid, Ch34xSerialDriver.class);
-                  break;
-                default:
-                  // Log.d(TAG, "Unknown driver!");
-                  callbackContext.error("Unknown driver!");
-                  break;
+              // the driver given applies to this request only, it is neither mapped nor cached
+              availableDrivers = new ArrayList<>();
+              try {
+                int vid = DriverProber.parseId(opts.opt("vid")); //can be an integer Number or a hex String
+                int pid = DriverProber.parseId(opts.opt("pid")); //can be an integer Number or a hex String
+                String driver = opts.has("driver") ? opts.getString("driver") : "CdcAcmSerialDriver";
+                Class<? extends UsbSerialDriver> driverClass = DriverProber.driverClass(driver);
+                for (UsbDevice device : devices) {
+                  if (device.getVendorId() == vid && device.getProductId() == pid) {
+                    UsbSerialDriver matching = DriverProber.newDriver(driverClass, device);
+                    if (matching != null) {
+                      availableDrivers.add(matching);
+                    }
+                  }
+                }
+              } catch (JSONException | NumberFormatException e) {
+                // Log.d(TAG, "Unknown driver!");
+                callbackContext.error(e.getMessage());
+                return;
               }
-
-              prober = new UsbSerialProber(customTable);
             } else {
-              // find all available drivers from attached devices.
-              prober = UsbSerialProber.getDefaultProber();
+              // the drivers of known devices come from the probe cache
+              availableDrivers = prober.findAllDrivers(devices);
             }
-
-            List<UsbSerialDriver> availableDrivers = prober.findAllDrivers(manager);
-            checkConnectionsList();
+            final double probeMillis = (System.nanoTime() - probeStart) / 1e6;
             if (!availableDrivers.isEmpty()) {
               // get the first one as there is a high chance that there is no more than one usb device attached to your android
               // Lấy thiết bị và yêu cầu quyền truy cập
-              driver = availableDrivers.get(0);
+              final UsbSerialDriver driver = availableDrivers.get(0);
 
               UsbDevice device = driver.getDevice();
               int deviceId = device.getDeviceId();
-              if (deviceConnections.containsKey(deviceId)) {
+              currentDeviceId = deviceId;
+              if (deviceConnections.containsKey(DeviceConnection.sessionKey(deviceId, 0))) {
                 // Log.d(TAG, "Device already connected!");
                 callbackContext.success("Device already connected!");
                 return;
               }
 
-              // Tạo intent dùng để yêu cầu quyền truy cập thiết bị
-              PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                cordova.getActivity(),
-                0,
-                new Intent(UsbBroadcastReceiver.USB_PERMISSION),
-                PendingIntent.FLAG_IMMUTABLE
-              );
-
-              // Tạo IntentFilter để lắng nghe các sự kiện gắn và tháo thiết bị USB
-              IntentFilter filter = new IntentFilter();
-              filter.addAction(UsbBroadcastReceiver.USB_PERMISSION);
-              filter.addAction(manager.ACTION_USB_DEVICE_ATTACHED);
-              filter.addAction(manager.ACTION_USB_DEVICE_DETACHED);
-
-              // Tạo BroadcastReceiver để xử lý các sự kiện
-              UsbBroadcastReceiver usbReceiver = new UsbBroadcastReceiver(
+              requestDevicePermission(
+                device,
                 new RequestPermissionCallback() {
                   @Override
                   void success(UsbDevice device) {
-                    DeviceConnection deviceConnection = new DeviceConnection(device);
-
-                    deviceConnections.put(device.getDeviceId(), deviceConnection);
+                    DeviceConnection deviceConnection = addDeviceConnection(device);
+                    deviceConnection.setDriver(driver);
                     // Log.d(TAG, "Permission to connect to the device was accepted!");
                     JSONObject returnObj = new JSONObject();
                     addProperty(returnObj, "device", deviceToJSONObj(device));
+                    addProperty(returnObj, "ports", driver.getPorts().size());
+                    addProperty(returnObj, "driver", driver.getClass().getSimpleName());
+                    addProperty(returnObj, "probeMillis", probeMillis);
 
                     PluginResult pluginResult = new PluginResult(PluginResult.Status.OK, returnObj);
                     pluginResult.setKeepCallback(true);
                     callbackContext.sendPluginResult(pluginResult);
                   }
-                },
-                cordova.getActivity(),
-                device
+                }
               );
-              cordova.getActivity().registerReceiver(usbReceiver, filter, cordova.getActivity().RECEIVER_EXPORTED);
-
-              // Yêu cầu quyền truy cập thiết bị USB
-              manager.requestPermission(device, pendingIntent);
             } else {
               // Log.d(TAG, "No device found!");
               callbackContext.error("No device found!");
@@ -477,287 +671,599 @@ public class Serial extends CordovaPlugin {
       );
   }
 
-  private DeviceConnection addDeviceConnection(UsbDevice device) {
-    int deviceId = device.getDeviceId();
-    if (deviceConnections.containsKey(deviceId)) {
-      // Log.d(TAG, "Device already connected!");
-      return deviceConnections.get(deviceId);
-    }
-
-    DeviceConnection deviceConnection = new DeviceConnection(device);
-    deviceConnections.put(device.getDeviceId(), deviceConnection);
-
-    return deviceConnection;
-  }
-
-  private void runOpenSerial(
-    final JSONObject opts,
-    final CallbackContext callbackContext,
-    DeviceConnection deviceConnection
-  ) {
-    UsbDevice device = deviceConnection.getDevice();
-    UsbDeviceConnection connection = null;
-
-    if (!deviceConnection.isOpen()) {
-      Log.d(TAG, "Device not open, opening it now");
-      runCloseSerial(callbackContext);
-      connection = manager.openDevice(device);
-      deviceConnection.setConnection(connection);
-    } else {
-      Log.d(TAG, "Device already open");
-      // connection = deviceConnection.getConnection();
-      return;
-    }
-
-    // get first port and open it
-    port = driver.getPorts().get(0);
-    try {
-      // get connection params or the default values
-      baudRate = opts.has("baudRate") ? opts.getInt("baudRate") : 9600;
-      dataBits = opts.has("dataBits") ? opts.getInt("dataBits") : UsbSerialPort.DATABITS_8;
-      stopBits = opts.has("stopBits") ? opts.getInt("stopBits") : UsbSerialPort.STOPBITS_1;
-      parity = opts.has("parity") ? opts.getInt("parity") : UsbSerialPort.PARITY_NONE;
-      setDTR = opts.has("dtr") && opts.getBoolean("dtr");
-      setRTS = opts.has("rts") && opts.getBoolean("rts");
-      // Sleep On Pause defaults to true
-      sleepOnPause = !opts.has("sleepOnPause") || opts.getBoolean("sleepOnPause");
-
-      port.open(connection);
-      port.setParameters(baudRate, dataBits, stopBits, parity);
-      if (setDTR) port.setDTR(true);
-      if (setRTS) port.setRTS(true);
-
-      previousOpenDeviceId = device.getDeviceId();
-    } catch (IOException | JSONException e) {
-      // deal with error
-      // Log.d(TAG, Objects.requireNonNull(e.getMessage()));
-      callbackContext.error(e.getMessage());
-    }
+  /**
+   * Ask the user for the permission to use a device, the callback gets the answer
+   * @param device the device
+   * @param callback called once the user answered, granted or not
+   * @return the receiver waiting for the answer, unregistered once it arrived
+   */
+  private UsbBroadcastReceiver requestDevicePermission(UsbDevice device, RequestPermissionCallback callback) {
+    // Tạo intent dùng để yêu cầu quyền truy cập thiết bị
+    PendingIntent pendingIntent = PendingIntent.getBroadcast(
+      cordova.getActivity(),
+      0,
+      new Intent(UsbBroadcastReceiver.USB_PERMISSION),
+      PendingIntent.FLAG_IMMUTABLE
+    );
+
+    // IntentFilter for the permission answer, attach and detach events go to the UsbAttachReceiver
+    IntentFilter filter = new IntentFilter();
+    filter.addAction(UsbBroadcastReceiver.USB_PERMISSION);
+
+    // Tạo BroadcastReceiver để xử lý các sự kiện
+    UsbBroadcastReceiver usbReceiver = new UsbBroadcastReceiver(callback, cordova.getActivity(), device);
+    registerExportedReceiver(usbReceiver, filter);
+
+    // Yêu cầu quyền truy cập thiết bị USB
+    manager.requestPermission(device, pendingIntent);
+    return usbReceiver;
   }
 
   /**
-   * Open the serial port from Cordova
-   * @param opts a {@link JSONObject} containing the connection paramters
-   * @param callbackContext the cordova {@link CallbackContext}
+   * Request the permission for every supported device, optionally filtered by VID/PID, then
+   * open the granted devices in parallel, each one on its own lane. The permissions are asked
+   * one device at a time, as the system shows one dialog per device; devices already permitted
+   * get no dialog.
+   * @param opts a {@link JSONObject} containing filters, an array of { vid, pid }, open, false
+   *   to only request the permissions, permissionTimeout and the open options of the devices
+   * @param callbackContext receives { devices, probeMillis, totalMillis } with the status and
+   *   timings of every device
    */
-  private void openSerial(final JSONObject opts, final CallbackContext callbackContext) {
+  private void requestPermissionAll(final JSONObject opts, final CallbackContext callbackContext) {
     cordova
       .getThreadPool()
       .execute(
         new Runnable() {
           public void run() {
-            if (driver == null) {
-              callbackContext.error("Request permissions before attempting opening port");
+            final long start = System.nanoTime();
+            final boolean open = opts.optBoolean("open", true);
+            final int permissionTimeout = opts.optInt("permissionTimeout", PERMISSION_TIMEOUT_MILLIS);
+            List<UsbDevice> devices = new ArrayList<>();
+            try {
+              JSONArray filters = opts.optJSONArray("filters");
+              for (UsbDevice device : registry.getDevices()) {
+                if (filters == null || matchesFilters(device, filters)) {
+                  devices.add(device);
+                }
+              }
+            } catch (JSONException | NumberFormatException e) {
+              // Log.d(TAG, Objects.requireNonNull(e.getMessage()));
+              callbackContext.error(e.getMessage());
               return;
             }
+            List<UsbSerialDriver> drivers = prober.findAllDrivers(devices);
+            double probeMillis = (System.nanoTime() - start) / 1e6;
+
+            // permissions, one device at a time
+            final JSONObject[] results = new JSONObject[drivers.size()];
+            final List<DeviceConnection> granted = new ArrayList<>();
+            final List<Integer> grantedIndexes = new ArrayList<>();
+            for (int i = 0; i < drivers.size(); i++) {
+              UsbSerialDriver driver = drivers.get(i);
+              UsbDevice device = driver.getDevice();
+              long permissionStart = System.nanoTime();
+              String permission = "granted";
+              if (!manager.hasPermission(device)) {
+                final CountDownLatch answered = new CountDownLatch(1);
+                UsbBroadcastReceiver usbReceiver = requestDevicePermission(
+                  device,
+                  new RequestPermissionCallback() {
+                    @Override
+                    void success(UsbDevice device) {
+                      answered.countDown();
+                    }
+                  }
+                );
+                try {
+                  if (!answered.await(permissionTimeout, TimeUnit.MILLISECONDS)) {
+                    permission = "timeout";
+                    try {
+                      cordova.getActivity().unregisterReceiver(usbReceiver);
+                    } catch (IllegalArgumentException ignored) {}
+                  }
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  permission = "timeout";
+                }
+                if ("granted".equals(permission) && !manager.hasPermission(device)) {
+                  permission = "denied";
+                }
+              }
+
+              JSONObject result = new JSONObject();
+              addProperty(result, "device", deviceToJSONObj(device));
+              addProperty(result, "deviceId", device.getDeviceId());
+              addProperty(result, "driver", driver.getClass().getSimpleName());
+              addProperty(result, "ports", driver.getPorts().size());
+              addProperty(result, "permission", permission);
+              addProperty(result, "permissionMillis", (System.nanoTime() - permissionStart) / 1e6);
+              addProperty(result, "open", false);
+              results[i] = result;
+              if ("granted".equals(permission)) {
+                DeviceConnection deviceConnection = addDeviceConnection(device);
+                if (deviceConnection.getDriver() == null) {
+                  deviceConnection.setDriver(driver);
+                }
+                granted.add(deviceConnection);
+                grantedIndexes.add(i);
+              }
+            }
+            if (!granted.isEmpty() && currentDeviceId < 0) {
+              currentDeviceId = granted.get(0).getDeviceId();
+            }
 
-            UsbDeviceConnection connection = manager.openDevice(driver.getDevice());
-            if (connection != null) {
-              // get first port and open it
-              port = driver.getPorts().get(0);
+            // opens, in parallel on the lanes of the devices
+            if (open) {
+              final CountDownLatch opened = new CountDownLatch(granted.size());
+              for (int i = 0; i < granted.size(); i++) {
+                final DeviceConnection deviceConnection = granted.get(i);
+                final JSONObject result = results[grantedIndexes.get(i)];
+                deviceConnection.execute(
+                  new Runnable() {
+                    public void run() {
+                      long openStart = System.nanoTime();
+                      try {
+                        if (!deviceConnection.isOpen()) {
+                          deviceConnection.setParameters(opts, 9600);
+                          if (!deviceConnection.open(manager)) {
+                            throw new IOException("Cannot connect to the device!");
+                          }
+                          onDeviceStateChange(deviceConnection);
+                        }
+                        addProperty(result, "open", true);
+                      } catch (IOException | JSONException e) {
+                        addProperty(result, "error", e.getMessage());
+                      } finally {
+                        addProperty(result, "openMillis", (System.nanoTime() - openStart) / 1e6);
+                        opened.countDown();
+                      }
+                    }
+                  }
+                );
+              }
               try {
-                // get connection params or the default values
-                baudRate = opts.has("baudRate") ? opts.getInt("baudRate") : 9600;
-                dataBits = opts.has("dataBits") ? opts.getInt("dataBits") : UsbSerialPort.DATABITS_8;
-                stopBits = opts.has("stopBits") ? opts.getInt("stopBits") : UsbSerialPort.STOPBITS_1;
-                parity = opts.has("parity") ? opts.getInt("parity") : UsbSerialPort.PARITY_NONE;
-                setDTR = opts.has("dtr") && opts.getBoolean("dtr");
-                setRTS = opts.has("rts") && opts.getBoolean("rts");
-                // Sleep On Pause defaults to true
-                sleepOnPause = !opts.has("sleepOnPause") || opts.getBoolean("sleepOnPause");
-
-                port.open(connection);
-                port.setParameters(baudRate, dataBits, stopBits, parity);
-                if (setDTR) port.setDTR(true);
-                if (setRTS) port.setRTS(true);
-              } catch (IOException | JSONException e) {
-                // deal with error
-                // Log.d(TAG, Objects.requireNonNull(e.getMessage()));
-                callbackContext.error(e.getMessage());
+                opened.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
               }
+            }
 
-              // Log.d(TAG, "Serial port opened!");
-              callbackContext.success("Serial port opened!");
-            } else {
-              // Log.d(TAG, "Cannot connect to the device!");
-              callbackContext.error("Cannot connect to the device!");
+            JSONArray devicesArray = new JSONArray();
+            for (JSONObject result : results) {
+              devicesArray.put(result);
             }
-            onDeviceStateChange();
+            JSONObject returnObj = new JSONObject();
+            addProperty(returnObj, "devices", devicesArray);
+            addProperty(returnObj, "probeMillis", probeMillis);
+            addProperty(returnObj, "totalMillis", (System.nanoTime() - start) / 1e6);
+            callbackContext.success(returnObj);
           }
         }
       );
   }
 
   /**
-   * Write on the serial port
-   * @param data the {@link String} representation of the data to be written on the port
-   * @param callbackContext the cordova {@link CallbackContext}
+   * @param device a device
+   * @param filters an array of { vid, pid }, each one an integer Number or a hex String, a
+   *   missing pid matches every product of the vendor
+   * @return true if the device matches one of the filters
+   * @throws JSONException if a filter has no vid
    */
-  private void writeSerial(final String data, final CallbackContext callbackContext) {
-    cordova
-      .getThreadPool()
-      .execute(() -> {
-        if (port == null) {
-          callbackContext.error("Writing a closed port.");
-        } else {
-          try {
-            // Log.d(TAG, data);
-            byte[] buffer = data.getBytes();
-            port.write(buffer, 1000);
-            callbackContext.success(buffer.length + "character written.");
-          } catch (IOException | NullPointerException e) {
-            // deal with error
-            // Log.d(TAG, Objects.requireNonNull(e.getMessage()));
-            callbackContext.error(e.getMessage());
-          }
-        }
-      });
+  private static boolean matchesFilters(UsbDevice device, JSONArray filters) throws JSONException {
+    for (int i = 0; i < filters.length(); i++) {
+      JSONObject filter = filters.getJSONObject(i);
+      if (
+        device.getVendorId() == DriverProber.parseId(filter.get("vid")) &&
+        (!filter.has("pid") || device.getProductId() == DriverProber.parseId(filter.get("pid")))
+      ) {
+        return true;
+      }
+    }
+    return false;
   }
 
-  private boolean runWriteSerial(final String data, final CallbackContext callbackContext) {
-    if (port == null) {
-      callbackContext.error("Cannot write to a closed port.");
-      return false;
-    } else {
-      try {
-        // Log.d(TAG, "Writing data: " + data);
-        byte[] buffer = data.getBytes();
-        port.write(buffer, 1000); // Write data to the port with a 1-second timeout
-        return true;
-      } catch (IOException | NullPointerException e) {
-        // Handle the error and report it
-        // Log.d(TAG, "Error writing to port: " + Objects.requireNonNull(e.getMessage()));
-        callbackContext.error("Error writing to port: " + e.getMessage());
-        return false;
+  /**
+   * Map VID/PID pairs to drivers for the next permission requests
+   * @param opts a {@link JSONObject} containing drivers, an array of { vid, pid, driver }, and
+   *   clearCache, true to forget the drivers found by earlier probes
+   * @param callbackContext the cordova {@link CallbackContext}
+   */
+  private void registerDrivers(final JSONObject opts, final CallbackContext callbackContext) {
+    if (prober == null) {
+      callbackContext.error("UsbManager is unavailable");
+      return;
+    }
+    try {
+      if (opts.optBoolean("clearCache", false)) {
+        prober.clearCache();
+      }
+      JSONArray drivers = opts.optJSONArray("drivers");
+      if (drivers != null) {
+        prober.addDrivers(drivers);
       }
+      callbackContext.success(prober.toJSON());
+    } catch (JSONException e) {
+      // deal with error
+      // Log.d(TAG, Objects.requireNonNull(e.getMessage()));
+      callbackContext.error(e.getMessage());
     }
   }
 
-  private void writeSerialByDeviceId(final JSONObject opts, final CallbackContext callbackContext) {
-    cordova
-      .getThreadPool()
-      .execute(
-        new Runnable() {
-          public void run() {
-            try {
-              if (!opts.has("deviceId")) {
-                // Log.d(TAG, "No device specified.");
-                callbackContext.error("No device specified.");
-                return;
-              }
+  private DeviceConnection addDeviceConnection(UsbDevice device) {
+    long sessionKey = DeviceConnection.sessionKey(device.getDeviceId(), 0);
+    DeviceConnection deviceConnection = deviceConnections.get(sessionKey);
+    if (deviceConnection != null) {
+      // Log.d(TAG, "Device already connected!");
+      return deviceConnection;
+    }
 
-              if (!opts.has("data")) {
-                // Log.d(TAG, "No data specified.");
-                callbackContext.error("No data specified.");
-                return;
-              }
+    // a device reattached without permission gets its detached sessions back once permitted
+    for (DeviceConnection detached : takeDetachedSessions(device)) {
+      reconnect(detached, device);
+    }
 
-              DeviceConnection deviceConnection = deviceConnections.get(opts.getInt("deviceId"));
+    // two permission answers for the same device keep the first session
+    deviceConnection = new DeviceConnection(device);
+    DeviceConnection existing = deviceConnections.putIfAbsent(sessionKey, deviceConnection);
+    return existing != null ? existing : deviceConnection;
+  }
 
-              if (deviceConnection == null) {
-                // Log.d(TAG, "Device not found.");
-                callbackContext.error("Device not found.");
-                return;
-              }
+  /**
+   * Session of the port named by the deviceId and portIndex of opts. The session of another
+   * port than the first one is created on first use, with the driver of the device.
+   * @param opts a {@link JSONObject} containing the deviceId and the portIndex, 0 by default
+   * @return the {@link DeviceConnection} or null if there is no such device or port
+   */
+  private DeviceConnection getDeviceConnection(JSONObject opts) {
+    int deviceId = opts.optInt("deviceId");
+    int portIndex = opts.optInt("portIndex", 0);
+    DeviceConnection deviceConnection = deviceConnections.get(DeviceConnection.sessionKey(deviceId, portIndex));
+    if (deviceConnection != null || portIndex <= 0) {
+      return deviceConnection;
+    }
+    DeviceConnection firstPort = deviceConnections.get(DeviceConnection.sessionKey(deviceId, 0));
+    UsbSerialDriver driver = firstPort != null ? firstPort.getDriver() : null;
+    if (driver == null || portIndex >= driver.getPorts().size()) {
+      return null;
+    }
+    deviceConnection = new DeviceConnection(firstPort.getDevice(), portIndex);
+    deviceConnection.setDriver(driver);
+    DeviceConnection existing = deviceConnections.putIfAbsent(deviceConnection.getSessionKey(), deviceConnection);
+    return existing != null ? existing : deviceConnection;
+  }
 
-              runOpenSerial(opts, callbackContext, deviceConnection);
+  /**
+   * Run a command on the lane of a device, or on the thread pool when there is no such device
+   * @param deviceConnection the device the command is for, may be null
+   * @param command the command
+   */
+  private void executeOnLane(DeviceConnection deviceConnection, Runnable command) {
+    if (deviceConnection != null) {
+      deviceConnection.execute(command);
+    } else {
+      cordova.getThreadPool().execute(command);
+    }
+  }
 
-              String data = opts.getString("data");
+  /**
+   * Run a command on the lane of the device named by the deviceId of opts
+   * @param opts a {@link JSONObject} containing the deviceId
+   * @param command the command, looking the device up again to report a missing one
+   */
+  private void executeOnLane(JSONObject opts, Runnable command) {
+    executeOnLane(opts.has("deviceId") ? getDeviceConnection(opts) : null, command);
+  }
 
-              boolean status = runWriteSerial(data, callbackContext);
+  /**
+   * Open the session of a device unless it is already open, other open devices are left untouched
+   * @return true if the session is open
+   */
+  private boolean runOpenSerial(
+    final JSONObject opts,
+    final CallbackContext callbackContext,
+    DeviceConnection deviceConnection
+  ) {
+    if (deviceConnection.isOpen()) {
+      // Log.d(TAG, "Device already open");
+      return true;
+    }
 
-              if (status) {
-                Log.d(TAG, "Data written successfully!");
-                callbackContext.success("Data written successfully!");
-              }
-            } catch (JSONException e) {
-              // deal with error
-              // Log.d(TAG, Objects.requireNonNull(e.getMessage()));
-              callbackContext.error(e.getMessage());
-            }
-          }
-        }
-      );
+    Log.d(TAG, "Device not open, opening it now");
+    try {
+      // get connection params or the default values
+      deviceConnection.setParameters(opts, 9600);
+      if (!deviceConnection.open(manager)) {
+        callbackContext.error("Cannot connect to the device!");
+        return false;
+      }
+      onDeviceStateChange(deviceConnection);
+      return true;
+    } catch (IOException | JSONException e) {
+      // deal with error
+      // Log.d(TAG, Objects.requireNonNull(e.getMessage()));
+      callbackContext.error(e.getMessage());
+      return false;
+    }
   }
 
   /**
-   * Write hex on the serial port
-   * @param data the {@link String} representation of the data to be written on the port as hexadecimal string
-   *             e.g. "ff55aaeeef000233"
+   * Session of the device used by the actions that take no deviceId
+   * @return the {@link DeviceConnection} or null if no permission was requested yet
+   */
+  private DeviceConnection getCurrentConnection() {
+    return deviceConnections.get(DeviceConnection.sessionKey(currentDeviceId, 0));
+  }
+
+  /**
+   * Open the serial port from Cordova
+   * @param opts a {@link JSONObject} containing the connection paramters
    * @param callbackContext the cordova {@link CallbackContext}
    */
-  private void writeSerialHex(final String data, final CallbackContext callbackContext) {
-    cordova
-      .getThreadPool()
-      .execute(() -> {
-        if (port == null) {
-          callbackContext.error("Writing a closed port.");
-        } else {
+  private void openSerial(final JSONObject opts, final CallbackContext callbackContext) {
+    executeOnLane(
+      getCurrentConnection(),
+      new Runnable() {
+        public void run() {
+          DeviceConnection deviceConnection = getCurrentConnection();
+          if (deviceConnection == null || deviceConnection.getDriver() == null) {
+            callbackContext.error("Request permissions before attempting opening port");
+            return;
+          }
+
           try {
-            // Log.d(TAG, data);
-            byte[] buffer = hexStringToByteArray(data);
-            port.write(buffer, 1000);
-            callbackContext.success(buffer.length + "bytes written.");
-          } catch (IOException | StringIndexOutOfBoundsException | NullPointerException e) {
+            // reopen with the new connection params
+            deviceConnection.close();
+            // get connection params or the default values
+            deviceConnection.setParameters(opts, 9600);
+            if (deviceConnection.open(manager)) {
+              // Log.d(TAG, "Serial port opened!");
+              callbackContext.success(openResultToJSONObj(deviceConnection));
+            } else {
+              // Log.d(TAG, "Cannot connect to the device!");
+              callbackContext.error("Cannot connect to the device!");
+            }
+          } catch (IOException | JSONException e) {
             // deal with error
             // Log.d(TAG, Objects.requireNonNull(e.getMessage()));
             callbackContext.error(e.getMessage());
           }
+          onDeviceStateChange(deviceConnection);
         }
-      });
+      }
+    );
+  }
+
+  /**
+   * Write on the serial port
+   * @param data the {@link String} representation of the data to be written on the port
+   * @param callbackContext the cordova {@link CallbackContext}
+   */
+  private void writeSerial(final String data, final CallbackContext callbackContext) {
+    // Queued on the calling thread so that writes keep the order of the calls
+    byte[] buffer = data.getBytes(StandardCharsets.UTF_8);
+    runWriteSerial(getCurrentConnection(), buffer, callbackContext, buffer.length + "character written.");
   }
 
   /**
-   * Convert a given string of hexadecimal numbers
-   * into a byte[] array where every 2 hex chars get packed into
-   * a single byte.
-   * E.g. "ffaa55" results in a 3 byte long byte array
-   *
+   * Queue a write on the write queue of a device
+   * @param deviceConnection the device to write to
+   * @param buffer the bytes to write
+   * @param callbackContext resolved once the bytes are written to the port
+   * @param successMessage the message sent on success
+   * @return false if the write was rejected
    */
-  private byte[] hexStringToByteArray(String s) throws StringIndexOutOfBoundsException {
-    int len = s.length();
-    byte[] data = new byte[len / 2];
-    for (int i = 0; i < len; i += 2) {
-      data[i / 2] = (byte) ((Character.digit(s.charAt(i), 16) << 4) + Character.digit(s.charAt(i + 1), 16));
+  private boolean runWriteSerial(
+    DeviceConnection deviceConnection,
+    final byte[] buffer,
+    final CallbackContext callbackContext,
+    String successMessage
+  ) {
+    WriteQueue writeQueue = deviceConnection != null ? deviceConnection.getWriteQueue() : null;
+    if (writeQueue == null) {
+      callbackContext.error("Cannot write to a closed port.");
+      return false;
     }
-    return data;
+    // Log.d(TAG, "Writing data: " + buffer.length);
+    return writeQueue.enqueue(buffer, callbackContext, successMessage);
   }
 
-  private UsbDevice findDeviceWithId(int deviceId) {
-    HashMap<String, UsbDevice> deviceList = manager.getDeviceList();
-    if (deviceList.isEmpty()) {
-      // Log.d(TAG, "No USB devices found");
-      return null;
+  private void writeSerialByDeviceId(final JSONObject opts, final CallbackContext callbackContext) {
+    if (!opts.has("data")) {
+      // Log.d(TAG, "No data specified.");
+      callbackContext.error("No data specified.");
+      return;
     }
+    writeSerialByDeviceId(opts, opts.optString("data").getBytes(StandardCharsets.UTF_8), callbackContext);
+  }
 
-    UsbDevice usbDevice = null;
-    for (UsbDevice device : deviceList.values()) {
-      if (device.getDeviceId() == deviceId) {
-        // Log.d(TAG, "Device found in devices list: " + device.getDeviceName());
-        usbDevice = device;
-        break;
-      }
+  /**
+   * Write bytes on the serial port of a device, opening its session first if needed
+   * @param opts a {@link JSONObject} containing the deviceId and the open options
+   * @param buffer the bytes to write
+   * @param callbackContext the cordova {@link CallbackContext}
+   */
+  private void writeSerialByDeviceId(
+    final JSONObject opts,
+    final byte[] buffer,
+    final CallbackContext callbackContext
+  ) {
+    if (!opts.has("deviceId")) {
+      // Log.d(TAG, "No device specified.");
+      callbackContext.error("No device specified.");
+      return;
     }
 
-    return usbDevice; // Now it can return the UsbDevice or null
+    final DeviceConnection deviceConnection = getDeviceConnection(opts);
+
+    if (deviceConnection == null) {
+      // Log.d(TAG, "Device not found.");
+      callbackContext.error("Device not found.");
+      return;
+    }
+
+    // Queued on the calling thread so that writes keep the order of the calls, unless an
+    // earlier write still waits on the lane for the session to open
+    if (deviceConnection.writeNow(buffer, callbackContext, "Data written successfully!")) {
+      return;
+    }
+
+    deviceConnection.execute(
+      new Runnable() {
+        public void run() {
+          // a virtual session is not reopened, once closed its writes are rejected
+          if (deviceConnection.isVirtual() || runOpenSerial(opts, callbackContext, deviceConnection)) {
+            deviceConnection.writeDeferred(buffer, callbackContext, "Data written successfully!");
+          } else {
+            deviceConnection.cancelDeferredWrite();
+          }
+        }
+      }
+    );
   }
 
-  JSONObject deviceToJSONObj(UsbDevice device) {
-    JSONObject json = new JSONObject();
+  /**
+   * Write a request and read its response in a single call
+   * @param opts a {@link JSONObject} containing the deviceId, timeout and match condition
+   * @param request the bytes to write
+   * @param callbackContext receives the response and a {@link JSONObject} with the match result and timings
+   */
+  private void transact(final JSONObject opts, final byte[] request, final CallbackContext callbackContext) {
+    executeOnLane(
+      opts,
+      new Runnable() {
+        public void run() {
+          try {
+            if (!opts.has("deviceId")) {
+              callbackContext.error("No device specified.");
+              return;
+            }
+
+            DeviceConnection deviceConnection = getDeviceConnection(opts);
+            if (deviceConnection == null) {
+              callbackContext.error("Device not found.");
+              return;
+            }
+
+            Transaction transaction = new Transaction(request, opts);
+
+            if (!runOpenSerial(opts, callbackContext, deviceConnection)) {
+              return;
+            }
+
+            if (deviceConnection.isStreaming()) {
+              callbackContext.error("Device is streaming, data is sent to the read callback.");
+              return;
+            }
+
+            transaction.run(deviceConnection);
+
+            List<PluginResult> parts = new ArrayList<>(2);
+            parts.add(new PluginResult(PluginResult.Status.OK, transaction.getResponse()));
+            parts.add(new PluginResult(PluginResult.Status.OK, transaction.getInfo()));
+            callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.OK, parts));
+          } catch (IOException | JSONException e) {
+            // deal with error
+            // Log.d(TAG, Objects.requireNonNull(e.getMessage()));
+            callbackContext.error(e.getMessage());
+          }
+        }
+      }
+    );
+  }
+
+  /**
+   * Read length bytes into one array, reporting the progress of the read along the way
+   * @param opts a {@link JSONObject} containing the deviceId, length, timeout, idleTimeout and progressMillis
+   * @param callbackContext receives progress events, then the bytes and a {@link JSONObject} with the throughput
+   */
+  private void readExactly(final JSONObject opts, final CallbackContext callbackContext) {
+    executeOnLane(
+      opts,
+      new Runnable() {
+        public void run() {
+          try {
+            if (!opts.has("deviceId")) {
+              callbackContext.error("No device specified.");
+              return;
+            }
+
+            DeviceConnection deviceConnection = getDeviceConnection(opts);
+            if (deviceConnection == null) {
+              callbackContext.error("Device not found.");
+              return;
+            }
+
+            ExactRead read = new ExactRead(opts);
+
+            if (!runOpenSerial(opts, callbackContext, deviceConnection)) {
+              return;
+            }
+
+            if (deviceConnection.isStreaming()) {
+              callbackContext.error("Device is streaming, data is sent to the read callback.");
+              return;
+            }
+
+            read.run(
+              deviceConnection,
+              new ExactRead.ProgressListener() {
+                @Override
+                public void onProgress(int bytes, int length, long bytesPerSecond) {
+                  JSONObject progress = new JSONObject();
+                  addProperty(progress, "event", "progress");
+                  addProperty(progress, "bytes", bytes);
+                  addProperty(progress, "length", length);
+                  addProperty(progress, "bytesPerSecond", bytesPerSecond);
+                  PluginResult result = new PluginResult(PluginResult.Status.OK, progress);
+                  result.setKeepCallback(true);
+                  callbackContext.sendPluginResult(result);
+                }
+              }
+            );
+
+            List<PluginResult> parts = new ArrayList<>(2);
+            parts.add(new PluginResult(PluginResult.Status.OK, read.getData()));
+            parts.add(new PluginResult(PluginResult.Status.OK, read.getInfo()));
+            callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.OK, parts));
+          } catch (IOException | JSONException e) {
+            // deal with error
+            // Log.d(TAG, Objects.requireNonNull(e.getMessage()));
+            callbackContext.error(e.getMessage());
+          }
+        }
+      }
+    );
+  }
+
+  /**
+   * Write hex on the serial port
+   * @param data the {@link String} representation of the data to be written on the port as hexadecimal string
+   *             e.g. "ff55aaeeef000233"
+   * @param callbackContext the cordova {@link CallbackContext}
+   */
+  private void writeSerialHex(final String data, final CallbackContext callbackContext) {
     try {
-      json.put("deviceName", device.getDeviceName());
-      json.put("vendorId", device.getVendorId());
-      json.put("productId", device.getProductId());
-      json.put("deviceClass", device.getDeviceClass());
-      json.put("deviceSubclass", device.getDeviceSubclass());
-      json.put("deviceProtocol", device.getDeviceProtocol());
-      json.put("version", device.getVersion());
-      json.put("interfaces", device.getInterfaceCount());
-      json.put("deviceId", device.getDeviceId());
-    } catch (JSONException e) {
-      Log.e(TAG, "Error creating JSON object for USB device", e);
+      // Log.d(TAG, data);
+      byte[] buffer = HexCodec.decode(data);
+      runWriteSerial(getCurrentConnection(), buffer, callbackContext, buffer.length + "bytes written.");
+    } catch (IllegalArgumentException | NullPointerException e) {
+      // deal with error
+      // Log.d(TAG, Objects.requireNonNull(e.getMessage()));
+      callbackContext.error(e.getMessage());
     }
-    return json;
+  }
+
+  /**
+   * Write binary data on the serial port
+   * @param buffer the bytes of the ArrayBuffer passed by javascript
+   * @param callbackContext the cordova {@link CallbackContext}
+   */
+  private void writeSerialBinary(final byte[] buffer, final CallbackContext callbackContext) {
+    runWriteSerial(getCurrentConnection(), buffer, callbackContext, buffer.length + "bytes written.");
+  }
+
+  JSONObject deviceToJSONObj(UsbDevice device) {
+    return registry.getDescriptor(device);
   }
 
   /**
@@ -766,102 +1272,146 @@ public class Serial extends CordovaPlugin {
    * @param callbackContext the cordova {@link CallbackContext}
    */
   private void readSerialByDeviceId(final JSONObject opts, final CallbackContext callbackContext) {
-    cordova
-      .getThreadPool()
-      .execute(
-        new Runnable() {
-          public void run() {
-            try {
-              if (!opts.has("deviceId")) {
-                // Log.d(TAG, "No device specified.");
-                callbackContext.error("No device specified.");
-                return;
-              }
+    executeOnLane(
+      opts,
+      new Runnable() {
+        public void run() {
+          if (!opts.has("deviceId")) {
+            // Log.d(TAG, "No device specified.");
+            callbackContext.error("No device specified.");
+            return;
+          }
 
-              DeviceConnection deviceConnection = deviceConnections.get(opts.getInt("deviceId"));
-              if (deviceConnection == null) {
-                // Log.d(TAG, "Device not found.");
-                callbackContext.error("Device not found.");
-                return;
-              }
+          DeviceConnection deviceConnection = getDeviceConnection(opts);
+          if (deviceConnection == null) {
+            // Log.d(TAG, "Device not found.");
+            callbackContext.error("Device not found.");
+            return;
+          }
 
-              runOpenSerial(opts, callbackContext, deviceConnection);
+          if (!runOpenSerial(opts, callbackContext, deviceConnection)) {
+            return;
+          }
 
-              // Ensure read operation completes before closing
-              final byte[] data = runReadSerial(callbackContext, opts);
+          if (deviceConnection.isStreaming()) {
+            callbackContext.error("Device is streaming, data is sent to the read callback.");
+            return;
+          }
 
-              // Closing the serial port after reading
-              PluginResult.Status status = PluginResult.Status.OK;
-              callbackContext.sendPluginResult(new PluginResult(status, data));
-            } catch (JSONException e) {
-              // deal with error
-              // Log.d(TAG, Objects.requireNonNull(e.getMessage()));
-              callbackContext.error(e.getMessage());
-            }
+          // Long-poll: read natively until the condition of opts is met or the deadline passes
+          if (Transaction.hasCondition(opts)) {
+            runLongPollRead(deviceConnection, callbackContext, opts);
+            return;
           }
-        }
-      );
-  }
 
-  private final byte[] runReadSerial(final CallbackContext callbackContext, JSONObject opts) {
-    if (port == null) {
-      // Log.d(TAG, "Reading a closed port.");
-      callbackContext.error("Reading a closed port.");
-      return new byte[0]; // Return an empty byte array
-    } else {
-      try {
-        int timeout = opts.has("timeout") ? opts.getInt("timeout") : READ_WAIT_MILLIS;
-        // Log.d(TAG, "Read with timeout: " + timeout);
-        int len = port.read(mReadBuffer.array(), timeout);
-        // Whatever happens, we send an "OK" result, up to the
-        // receiver to check that len > 0
-        PluginResult.Status status = PluginResult.Status.OK;
-        if (len > 0) {
-          // Log.d(TAG, "Read data len=" + len);
-          final byte[] data = new byte[len];
-          mReadBuffer.get(data, 0, len);
-          mReadBuffer.clear();
-          return data;
-        } else {
-          final byte[] data = new byte[0];
-          return data;
+          // The session stays open for the next read or write
+          final byte[] data = runReadSerial(deviceConnection, callbackContext, opts);
+
+          PluginResult.Status status = PluginResult.Status.OK;
+          callbackContext.sendPluginResult(new PluginResult(status, data));
         }
-      } catch (JSONException | IOException | NullPointerException e) {
-        // deal with error
-        // Log.d(TAG, Objects.requireNonNull(e.getMessage()));
-        callbackContext.error(e.getMessage());
-        return new byte[0]; // Return an empty byte array
       }
+    );
+  }
+
+  /**
+   * Read until at least expectBytes bytes, a terminator, a pattern or a silence of idleGap
+   * milliseconds, bounded by the timeout of the whole read, and send the bytes in one buffer
+   * @param deviceConnection the open device
+   * @param callbackContext the cordova {@link CallbackContext}
+   * @param opts a {@link JSONObject} containing the condition and timeout
+   */
+  private void runLongPollRead(DeviceConnection deviceConnection, final CallbackContext callbackContext, JSONObject opts) {
+    try {
+      Transaction read = new Transaction(EMPTY_DATA, opts);
+      read.run(deviceConnection);
+      callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.OK, read.getResponse()));
+    } catch (IOException | JSONException e) {
+      // deal with error
+      // Log.d(TAG, Objects.requireNonNull(e.getMessage()));
+      callbackContext.error(e.getMessage());
+    }
+  }
+
+  private final byte[] runReadSerial(
+    DeviceConnection deviceConnection,
+    final CallbackContext callbackContext,
+    JSONObject opts
+  ) {
+    try {
+      int timeout = opts.has("timeout") ? opts.getInt("timeout") : deviceConnection.getReadTimeout();
+      // Log.d(TAG, "Read with timeout: " + timeout);
+      return runReadSerial(deviceConnection, callbackContext, timeout);
+    } catch (JSONException e) {
+      callbackContext.error(e.getMessage());
+      return EMPTY_DATA;
     }
   }
 
-  private final byte[] runReadSerial(final CallbackContext callbackContext) {
-    if (port == null) {
+  private final byte[] runReadSerial(DeviceConnection deviceConnection, final CallbackContext callbackContext) {
+    // a missing session is reported by the read
+    int timeout = deviceConnection != null ? deviceConnection.getReadTimeout() : 0;
+    return runReadSerial(deviceConnection, callbackContext, timeout);
+  }
+
+  /**
+   * Read once from the port of a device into one of its pooled buffers
+   * @return the bytes read, empty if none arrived within timeout
+   */
+  private final byte[] runReadSerial(
+    DeviceConnection deviceConnection,
+    final CallbackContext callbackContext,
+    int timeout
+  ) {
+    SerialTransport transport = deviceConnection != null ? deviceConnection.getTransport() : null;
+    if (transport == null) {
       // Log.d(TAG, "Reading a closed port.");
       callbackContext.error("Reading a closed port.");
-      return new byte[0]; // Return an empty byte array
-    } else {
-      try {
-        int len = port.read(mReadBuffer.array(), READ_WAIT_MILLIS);
-        // Whatever happens, we send an "OK" result, up to the
-        // receiver to check that len > 0
-        PluginResult.Status status = PluginResult.Status.OK;
-        if (len > 0) {
-          // Log.d(TAG, "Read data len=" + len);
-          final byte[] data = new byte[len];
-          mReadBuffer.get(data, 0, len);
-          mReadBuffer.clear();
-          return data;
-        } else {
-          final byte[] data = new byte[0];
-          return data;
+      return EMPTY_DATA;
+    }
+    ReadBufferPool readBuffers = deviceConnection.getReadBuffers();
+    DeviceStats stats = deviceConnection.getStats();
+    // a framed session returns one complete frame per read
+    boolean framed = deviceConnection.getFrameDecoder() != null;
+    byte[] buffer = readBuffers.acquire();
+    try {
+      int len;
+      synchronized (deviceConnection.getReadLock()) {
+        byte[] frame = framed ? deviceConnection.nextPolledFrame(null, 0) : null;
+        if (frame != null) {
+          return frame;
+        }
+        len = deviceConnection.takeUnread(buffer);
+        if (len == 0) {
+          long start = System.nanoTime();
+          len = transport.read(buffer, timeout);
+          stats.onRead(len, System.nanoTime() - start);
+          CaptureWriter capture = deviceConnection.getCapture();
+          if (capture != null && len > 0) {
+            capture.record(CaptureWriter.IN, buffer, 0, len);
+          }
+        }
+        if (framed) {
+          frame = deviceConnection.nextPolledFrame(buffer, len);
+          return frame != null ? frame : EMPTY_DATA;
         }
-      } catch (IOException | NullPointerException e) {
-        // deal with error
-        // Log.d(TAG, Objects.requireNonNull(e.getMessage()));
-        callbackContext.error(e.getMessage());
-        return new byte[0]; // Return an empty byte array
       }
+      // Whatever happens, we send an "OK" result, up to the
+      // receiver to check that len > 0
+      if (len > 0) {
+        // Log.d(TAG, "Read data len=" + len);
+        return Arrays.copyOf(buffer, len);
+      } else {
+        return EMPTY_DATA;
+      }
+    } catch (IOException | NullPointerException e) {
+      // deal with error
+      // Log.d(TAG, Objects.requireNonNull(e.getMessage()));
+      stats.errors.incrementAndGet();
+      callbackContext.error(e.getMessage());
+      return EMPTY_DATA;
+    } finally {
+      readBuffers.release(buffer);
     }
   }
 
@@ -870,110 +1420,464 @@ public class Serial extends CordovaPlugin {
    * @param callbackContext the {@link CallbackContext}
    */
   private void readSerial(final CallbackContext callbackContext) {
-    cordova
-      .getThreadPool()
-      .execute(
-        new Runnable() {
-          public void run() {
-            final byte[] data = runReadSerial(callbackContext);
-            PluginResult.Status status = PluginResult.Status.OK;
-            callbackContext.sendPluginResult(new PluginResult(status, data));
-          }
+    executeOnLane(
+      getCurrentConnection(),
+      new Runnable() {
+        public void run() {
+          final byte[] data = runReadSerial(getCurrentConnection(), callbackContext);
+          PluginResult.Status status = PluginResult.Status.OK;
+          callbackContext.sendPluginResult(new PluginResult(status, data));
         }
-      );
+      }
+    );
   }
 
-  private void runCloseSerial(final CallbackContext callbackContext) {
-    try {
-      // Make sure we don't die if we try to close an non-existing port!
-      if (port != null) {
-        port.close();
-        DeviceConnection deviceConnection = deviceConnections.get(previousOpenDeviceId);
-        if (deviceConnection != null) {
-          deviceConnection.setConnection(null);
+  /**
+   * Close the serial port
+   * @param callbackContext the cordova {@link CallbackContext}
+   */
+  private void closeSerial(final CallbackContext callbackContext) {
+    executeOnLane(
+      getCurrentConnection(),
+      new Runnable() {
+        public void run() {
+          // Make sure we don't die if we try to close an non-existing port!
+          DeviceConnection deviceConnection = getCurrentConnection();
+          if (deviceConnection != null) {
+            deviceConnection.close();
+          }
+          callbackContext.success("Serial port cloesd!");
         }
-        Log.d(TAG, "Close device connection: " + previousOpenDeviceId);
       }
-      port = null;
-      // Log.d(TAG, "Serial port closed!");
-    } catch (IOException | NullPointerException e) {
-      // deal with error
-      Log.d(TAG + "close err123:", Objects.requireNonNull(e.getMessage()));
-      // callbackContext.error(e.getMessage());
-    }
-    onDeviceStateChange();
+    );
   }
 
   /**
-   * Close the serial port
+   * Close the serial port of one device, the sessions of the other devices stay open
+   * @param opts a {@link JSONObject} containing the deviceId
    * @param callbackContext the cordova {@link CallbackContext}
    */
-  private void closeSerial(final CallbackContext callbackContext) {
-    cordova
-      .getThreadPool()
-      .execute(
-        new Runnable() {
-          public void run() {
-            try {
-              // Make sure we don't die if we try to close an non-existing port!
-              if (port != null) {
-                port.close();
-              }
-              port = null;
-              callbackContext.success("Serial port cloesd!");
-            } catch (IOException | NullPointerException e) {
-              // deal with error
-              // Log.d(TAG, Objects.requireNonNull(e.getMessage()));
-              callbackContext.error(e.getMessage());
+  private void closeSerialByDeviceId(final JSONObject opts, final CallbackContext callbackContext) {
+    executeOnLane(
+      opts,
+      new Runnable() {
+        public void run() {
+          if (!opts.has("deviceId")) {
+            // Log.d(TAG, "No device specified.");
+            callbackContext.error("No device specified.");
+            return;
+          }
+
+          DeviceConnection deviceConnection = getDeviceConnection(opts);
+          if (deviceConnection == null) {
+            // Log.d(TAG, "Device not found.");
+            callbackContext.error("Device not found.");
+            return;
+          }
+
+          deviceConnection.close();
+          // a virtual device cannot be reopened
+          if (deviceConnection.isVirtual()) {
+            deviceConnections.remove(deviceConnection.getSessionKey());
+          }
+          Log.d(TAG, "Close device connection: " + deviceConnection.getDeviceId());
+          callbackContext.success("Serial port closed!");
+        }
+      }
+    );
+  }
+
+  /**
+   * Restart the observation of the serial connection of a device
+   * @param deviceConnection the device whose session was opened or closed
+   */
+  private void onDeviceStateChange(final DeviceConnection deviceConnection) {
+    deviceConnection.stopIoManager();
+    if (deviceConnection.isStreaming()) {
+      final int deviceId = deviceConnection.getDeviceId();
+      final int portIndex = deviceConnection.getPortIndex();
+      final DeviceStats stats = deviceConnection.getStats();
+      final ReceiveCoalescer coalescer = deviceConnection.createCoalescer(
+        mScheduler,
+        new ReceiveCoalescer.Sink() {
+          @Override
+          public void onData(byte[] data) {
+            Serial.this.updateReceivedData(deviceId, portIndex, stats, data);
+          }
+        }
+      );
+      // Framed streams send one callback per complete frame, so frames are not coalesced together
+      final FrameDecoder frameDecoder = deviceConnection.getFrameDecoder();
+      if (frameDecoder != null) {
+        FrameDecoder.Sink sink = new FrameDecoder.Sink() {
+          @Override
+          public void onFrame(byte[] frame) {
+            Serial.this.updateReceivedData(deviceId, portIndex, stats, frame);
+          }
+        };
+        // The optional reduce stage sits between the decoder and javascript
+        FrameReducer frameReducer = deviceConnection.getFrameReducer();
+        if (frameReducer != null) {
+          frameReducer.start(mScheduler, sink);
+          sink = frameReducer;
+        }
+        frameDecoder.reset();
+        frameDecoder.setSink(sink);
+      }
+      deviceConnection.startIoManager(
+        new TransportReader.Listener() {
+          @Override
+          public void onRunError(Exception e) {
+            // Stopped by closing the port or detaching the device
+            Log.d(TAG, "Runner stopped for device " + deviceId + ": " + e.getMessage());
+            coalescer.flush();
+          }
+
+          @Override
+          public void onNewData(final byte[] data) {
+            CaptureWriter capture = deviceConnection.getCapture();
+            if (capture != null) {
+              capture.record(CaptureWriter.IN, data, 0, data.length);
+            }
+            if (frameDecoder != null) {
+              frameDecoder.push(data, 0, data.length);
+            } else {
+              coalescer.add(data);
             }
-            onDeviceStateChange();
           }
         }
       );
+    }
   }
 
   /**
-   * Stop observing serial connection
+   * Dispatch read data to javascript, the callback receives the data and the id and port of the device it comes from
+   * @param deviceId the id of the device the data was read from
+   * @param portIndex the port of the device the data was read from
+   * @param stats the counters of the device, timing the delivery
+   * @param data the array of bytes to dispatch
    */
-  private void stopIoManager() {
-    if (mSerialIoManager != null) {
-      Log.i(TAG, "Stopping io manager.");
-      mSerialIoManager.stop();
-      mSerialIoManager = null;
+  private void updateReceivedData(int deviceId, int portIndex, DeviceStats stats, byte[] data) {
+    // Log.d(TAG, "Read data len=" + data.length);
+
+    CallbackContext callback = readCallback;
+    if (callback != null) {
+      List<PluginResult> parts = new ArrayList<>(3);
+      parts.add(new PluginResult(PluginResult.Status.OK, data));
+      parts.add(new PluginResult(PluginResult.Status.OK, deviceId));
+      parts.add(new PluginResult(PluginResult.Status.OK, portIndex));
+      PluginResult result = new PluginResult(PluginResult.Status.OK, parts);
+      result.setKeepCallback(true);
+      long start = System.nanoTime();
+      callback.sendPluginResult(result);
+      stats.onDelivery(System.nanoTime() - start);
     }
   }
 
   /**
-   * Observe serial connection
+   * Send the counters of the coalescing stage of a device
+   * @param opts a {@link JSONObject} containing the deviceId
+   * @param callbackContext the cordova {@link CallbackContext}
    */
-  private void startIoManager() {
-    if (port != null) {
-      Log.i(TAG, "Starting io manager.");
-      mSerialIoManager = new SerialInputOutputManager(port, mListener);
-      mExecutor.submit(mSerialIoManager);
+  private void getCoalescingStats(final JSONObject opts, final CallbackContext callbackContext) {
+    if (!opts.has("deviceId")) {
+      callbackContext.error("No device specified.");
+      return;
+    }
+    DeviceConnection deviceConnection = getDeviceConnection(opts);
+    if (deviceConnection == null) {
+      callbackContext.error("Device not found.");
+      return;
     }
+    ReceiveCoalescer coalescer = deviceConnection.getCoalescer();
+    JSONObject returnObj = new JSONObject();
+    addProperty(returnObj, "deviceId", deviceConnection.getDeviceId());
+    if (coalescer != null) {
+      addProperty(returnObj, "coalesceBytes", coalescer.getMaxBytes());
+      addProperty(returnObj, "coalesceMillis", coalescer.getMaxDelayMillis());
+      addProperty(returnObj, "chunks", coalescer.getChunks());
+      addProperty(returnObj, "flushes", coalescer.getFlushes());
+      addProperty(returnObj, "bytes", coalescer.getFlushedBytes());
+      addProperty(returnObj, "thresholdFlushes", coalescer.getThresholdFlushes());
+      addProperty(returnObj, "windowFlushes", coalescer.getWindowFlushes());
+      addProperty(returnObj, "averageBatchSize", coalescer.getAverageBatchSize());
+    }
+    callbackContext.success(returnObj);
   }
 
   /**
-   * Restart the observation of the serial connection
+   * Send the counters of the framing stage of a device
+   * @param opts a {@link JSONObject} containing the deviceId
+   * @param callbackContext the cordova {@link CallbackContext}
    */
-  private void onDeviceStateChange() {
-    // stopIoManager();
-    // startIoManager();
+  private void getFramingStats(final JSONObject opts, final CallbackContext callbackContext) {
+    if (!opts.has("deviceId")) {
+      callbackContext.error("No device specified.");
+      return;
+    }
+    DeviceConnection deviceConnection = getDeviceConnection(opts);
+    if (deviceConnection == null) {
+      callbackContext.error("Device not found.");
+      return;
+    }
+    FrameDecoder frameDecoder = deviceConnection.getFrameDecoder();
+    JSONObject returnObj = new JSONObject();
+    addProperty(returnObj, "deviceId", deviceConnection.getDeviceId());
+    if (frameDecoder != null) {
+      addProperty(returnObj, "frames", frameDecoder.getFrames());
+      addProperty(returnObj, "malformed", frameDecoder.getMalformed());
+      addProperty(returnObj, "overlong", frameDecoder.getOverlong());
+    }
+    FrameReducer frameReducer = deviceConnection.getFrameReducer();
+    if (frameReducer != null) {
+      addProperty(returnObj, "reducedFrames", frameReducer.getFramesIn());
+      addProperty(returnObj, "sentFrames", frameReducer.getFramesOut());
+    }
+    callbackContext.success(returnObj);
   }
 
   /**
-   * Dispatch read data to javascript
-   * @param data the array of bytes to dispatch
+   * Result of a successful open
+   * @param deviceConnection the open device
+   * @return the message, the device and port, and the tuning in effect
    */
-  private void updateReceivedData(byte[] data) {
-    // Log.d(TAG, "Read data len=" + data.length);
+  private JSONObject openResultToJSONObj(DeviceConnection deviceConnection) {
+    JSONObject returnObj = new JSONObject();
+    addProperty(returnObj, "message", "Serial port opened!");
+    addProperty(returnObj, "deviceId", deviceConnection.getDeviceId());
+    addProperty(returnObj, "portIndex", deviceConnection.getPortIndex());
+    addProperty(returnObj, "profile", deviceConnection.getProfile());
+    return returnObj;
+  }
 
-    if (readCallback != null) {
-      PluginResult result = new PluginResult(PluginResult.Status.OK, data);
-      result.setKeepCallback(true);
-      readCallback.sendPluginResult(result);
+  /**
+   * Send the I/O counters and latency histograms of a device, or of every device without deviceId
+   * @param opts a {@link JSONObject} containing the deviceId and reset, true to clear the counters once read
+   * @param callbackContext the cordova {@link CallbackContext}
+   */
+  private void getStats(final JSONObject opts, final CallbackContext callbackContext) {
+    boolean reset = opts.optBoolean("reset", false);
+    if (opts.has("deviceId")) {
+      DeviceConnection deviceConnection = getDeviceConnection(opts);
+      if (deviceConnection == null) {
+        callbackContext.error("Device not found.");
+        return;
+      }
+      callbackContext.success(statsToJSONObj(deviceConnection, reset));
+      return;
+    }
+    JSONArray returnArray = new JSONArray();
+    for (DeviceConnection deviceConnection : deviceConnections.values()) {
+      returnArray.put(statsToJSONObj(deviceConnection, reset));
+    }
+    callbackContext.success(returnArray);
+  }
+
+  private JSONObject statsToJSONObj(DeviceConnection deviceConnection, boolean reset) {
+    DeviceStats stats = deviceConnection.getStats();
+    JSONObject returnObj = stats.toJSON();
+    if (reset) {
+      stats.reset();
     }
+    addProperty(returnObj, "deviceId", deviceConnection.getDeviceId());
+    addProperty(returnObj, "portIndex", deviceConnection.getPortIndex());
+    addProperty(returnObj, "open", deviceConnection.isOpen());
+    WriteQueue writeQueue = deviceConnection.getWriteQueue();
+    addProperty(returnObj, "queuedBytes", writeQueue != null ? writeQueue.getQueuedBytes() : 0);
+    addProperty(returnObj, "queuedWrites", writeQueue != null ? writeQueue.getQueuedWrites() : 0);
+    ReceiveBuffer receiveBuffer = deviceConnection.getReceiveBuffer();
+    if (receiveBuffer != null) {
+      addProperty(returnObj, "receiveBuffer", receiveBuffer.toJSON());
+    }
+    addProperty(returnObj, "profile", deviceConnection.getProfile());
+    SerialTransport transport = deviceConnection.getTransport();
+    if (transport instanceof ReplayTransport) {
+      ReplayTransport replay = (ReplayTransport) transport;
+      JSONObject replayObj = new JSONObject();
+      addProperty(replayObj, "records", replay.getRecords());
+      addProperty(replayObj, "bytes", replay.getBytes());
+      addProperty(replayObj, "lagMillis", replay.getLagMillis());
+      addProperty(replayObj, "finished", replay.isFinished());
+      addProperty(returnObj, "replay", replayObj);
+    }
+    return returnObj;
+  }
+
+  /**
+   * Capture the bytes of a device to files natively, they are not sent to javascript
+   * @param opts a {@link JSONObject} containing the deviceId and the capture options
+   * @param callbackContext receives the first capture file
+   */
+  private void startCapture(final JSONObject opts, final CallbackContext callbackContext) {
+    executeOnLane(
+      opts,
+      new Runnable() {
+        public void run() {
+          try {
+            if (!opts.has("deviceId")) {
+              callbackContext.error("No device specified.");
+              return;
+            }
+            DeviceConnection deviceConnection = getDeviceConnection(opts);
+            if (deviceConnection == null) {
+              callbackContext.error("Device not found.");
+              return;
+            }
+
+            File directory = opts.has("directory")
+              ? new File(opts.getString("directory"))
+              : new File(cordova.getActivity().getFilesDir(), "serial-capture");
+            CaptureWriter capture = new CaptureWriter(
+              directory,
+              deviceConnection.getDeviceId(),
+              deviceConnection.getPortIndex(),
+              opts.has("maxFileBytes") ? opts.getLong("maxFileBytes") : CAPTURE_FILE_BYTES,
+              opts.optInt("maxFiles", 0),
+              opts.optBoolean("outgoing", false)
+            );
+            deviceConnection.startCapture(capture);
+
+            JSONObject returnObj = new JSONObject();
+            addProperty(returnObj, "deviceId", deviceConnection.getDeviceId());
+            addProperty(returnObj, "file", capture.getFiles().get(0).getAbsolutePath());
+            callbackContext.success(returnObj);
+          } catch (IOException | JSONException e) {
+            // deal with error
+            // Log.d(TAG, Objects.requireNonNull(e.getMessage()));
+            callbackContext.error(e.getMessage());
+          }
+        }
+      }
+    );
+  }
+
+  /**
+   * Stop the capture of a device
+   * @param opts a {@link JSONObject} containing the deviceId
+   * @param callbackContext receives the capture files and counters
+   */
+  private void stopCapture(final JSONObject opts, final CallbackContext callbackContext) {
+    executeOnLane(
+      opts,
+      new Runnable() {
+        public void run() {
+          if (!opts.has("deviceId")) {
+            callbackContext.error("No device specified.");
+            return;
+          }
+          DeviceConnection deviceConnection = getDeviceConnection(opts);
+          if (deviceConnection == null) {
+            callbackContext.error("Device not found.");
+            return;
+          }
+
+          CaptureWriter capture = deviceConnection.stopCapture();
+          JSONObject returnObj = new JSONObject();
+          addProperty(returnObj, "deviceId", deviceConnection.getDeviceId());
+          if (capture != null) {
+            JSONArray files = new JSONArray();
+            for (File file : capture.getFiles()) {
+              files.put(file.getAbsolutePath());
+            }
+            addProperty(returnObj, "files", files);
+            addProperty(returnObj, "records", capture.getRecords());
+            addProperty(returnObj, "bytes", capture.getBytes());
+          }
+          callbackContext.success(returnObj);
+        }
+      }
+    );
+  }
+
+  /**
+   * Pause or resume the delivery of the data streamed by a device
+   * @param opts a {@link JSONObject} containing the deviceId
+   * @param paused true to pause
+   * @param callbackContext the cordova {@link CallbackContext}
+   */
+  private void setReadingPaused(final JSONObject opts, final boolean paused, final CallbackContext callbackContext) {
+    executeOnLane(
+      opts,
+      new Runnable() {
+        public void run() {
+          if (!opts.has("deviceId")) {
+            callbackContext.error("No device specified.");
+            return;
+          }
+          DeviceConnection deviceConnection = getDeviceConnection(opts);
+          if (deviceConnection == null) {
+            callbackContext.error("Device not found.");
+            return;
+          }
+
+          if (deviceConnection.setReadingPaused(paused)) {
+            // no receive buffer: the reader itself is stopped or restarted
+            onDeviceStateChange(deviceConnection);
+          }
+          callbackContext.success(paused ? "Reading paused" : "Reading resumed");
+        }
+      }
+    );
+  }
+
+  /**
+   * Open a virtual device replaying capture files, read like a USB device
+   * @param opts a {@link JSONObject} containing the files, the replay options and the open options
+   * @param callbackContext receives the id of the virtual device
+   */
+  private void openReplay(final JSONObject opts, final CallbackContext callbackContext) {
+    cordova
+      .getThreadPool()
+      .execute(
+        new Runnable() {
+          public void run() {
+            try {
+              List<File> files = new ArrayList<>();
+              JSONArray paths = opts.optJSONArray("files");
+              if (paths != null) {
+                for (int i = 0; i < paths.length(); i++) {
+                  files.add(new File(paths.getString(i)));
+                }
+              } else if (opts.has("file")) {
+                files.add(new File(opts.getString("file")));
+              }
+              ReplayTransport transport = new ReplayTransport(
+                files,
+                opts.has("speed") ? opts.getDouble("speed") : 1,
+                opts.optBoolean("loop", false)
+              );
+
+              DeviceConnection deviceConnection = openVirtual(transport, opts);
+
+              JSONObject returnObj = new JSONObject();
+              addProperty(returnObj, "deviceId", deviceConnection.getDeviceId());
+              callbackContext.success(returnObj);
+            } catch (IOException | JSONException e) {
+              // deal with error
+              // Log.d(TAG, Objects.requireNonNull(e.getMessage()));
+              callbackContext.error(e.getMessage());
+            }
+          }
+        }
+      );
+  }
+
+  /**
+   * Open a virtual device over a transport that is not USB, such as a replay or, in the JVM
+   * harness, an in-memory loopback. It is read and written by its id like a USB device.
+   * @param transport the transport, closed with the session
+   * @param opts a {@link JSONObject} containing the open options
+   * @return the open session
+   * @throws IOException if the line parameters cannot be set
+   * @throws JSONException if an option is invalid
+   */
+  DeviceConnection openVirtual(SerialTransport transport, JSONObject opts) throws IOException, JSONException {
+    DeviceConnection deviceConnection = new DeviceConnection(nextVirtualDeviceId.getAndDecrement());
+    deviceConnection.setParameters(opts, 9600);
+    deviceConnection.open(transport);
+    deviceConnections.put(deviceConnection.getSessionKey(), deviceConnection);
+    onDeviceStateChange(deviceConnection);
+    return deviceConnection;
   }
 
   /**
@@ -1006,16 +1910,8 @@ public class Serial extends CordovaPlugin {
    */
   @Override
   public void onPause(boolean multitasking) {
-    if (sleepOnPause) {
-      stopIoManager();
-      if (port != null) {
-        try {
-          port.close();
-        } catch (IOException | NullPointerException e) {
-          // Ignore
-        }
-        port = null;
-      }
+    for (DeviceConnection deviceConnection : deviceConnections.values()) {
+      deviceConnection.suspend();
     }
   }
 
@@ -1025,32 +1921,22 @@ public class Serial extends CordovaPlugin {
    */
   @Override
   public void onResume(boolean multitasking) {
-    // Log.d(TAG, "Resumed, driver=" + driver);
-    if (sleepOnPause) {
-      if (driver == null) {
-        // Log.d(TAG, "No serial device to resume.");
-      } else {
-        UsbDeviceConnection connection = manager.openDevice(driver.getDevice());
-        if (connection != null) {
-          // get first port and open it
-          port = driver.getPorts().get(0);
-          try {
-            port.open(connection);
-            port.setParameters(baudRate, dataBits, stopBits, parity);
-            if (setDTR) port.setDTR(true);
-            if (setRTS) port.setRTS(true);
-          } catch (IOException e) {
-            // deal with error
-            // Log.d(TAG, Objects.requireNonNull(e.getMessage()));
+    for (final DeviceConnection deviceConnection : deviceConnections.values()) {
+      // reopened on the lane so it cannot interleave with a command of the device
+      deviceConnection.execute(
+        new Runnable() {
+          public void run() {
+            try {
+              if (deviceConnection.resume(manager)) {
+                onDeviceStateChange(deviceConnection);
+              }
+            } catch (IOException e) {
+              // deal with error
+              // Log.d(TAG, Objects.requireNonNull(e.getMessage()));
+            }
           }
-          // Log.d(TAG, "Serial port opened!");
-        } else {
-          // Log.d(TAG, "Cannot connect to the device!");
         }
-        // Log.d(TAG, "Serial device: " + driver.getClass().getSimpleName());
-      }
-
-      onDeviceStateChange();
+      );
     }
   }
 
@@ -1060,15 +1946,20 @@ public class Serial extends CordovaPlugin {
    */
   @Override
   public void onDestroy() {
-    // Log.d(TAG, "Destroy, port=" + port);
-    if (port != null) {
-      try {
-        port.close();
-      } catch (IOException | NullPointerException e) {
-        // Log.d(TAG, Objects.requireNonNull(e.getMessage()));
-      }
+    // Log.d(TAG, "Destroy, connections=" + deviceConnections.size());
+    for (DeviceConnection deviceConnection : deviceConnections.values()) {
+      deviceConnection.close();
+      deviceConnection.stopCapture();
+    }
+    for (DeviceConnection deviceConnection : detachedSessions) {
+      deviceConnection.stopCapture();
+    }
+    detachedSessions.clear();
+    mScheduler.shutdown();
+    if (attachReceiver != null) {
+      cordova.getActivity().unregisterReceiver(attachReceiver);
+      attachReceiver = null;
     }
-    onDeviceStateChange();
   }
 
   /**
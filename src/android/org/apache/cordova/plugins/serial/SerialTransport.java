@@ -0,0 +1,56 @@
+package org.apache.cordova.plugins.serial;
+
+import com.hoho.android.usbserial.driver.UsbSerialPort;
+import java.io.IOException;
+
+/**
+ * Byte transport of an open serial session. The plugin reads, writes and configures the line
+ * through this interface only, so a session can run over a USB serial adapter
+ * ({@link UsbSerialTransport}) or a recorded capture ({@link ReplayTransport}). The JVM
+ * harness in jvm/ adds an in-memory loopback and a Linux pseudo-terminal.
+ */
+public interface SerialTransport {
+  /**
+   * Set the line parameters, with the constants of {@link UsbSerialPort}
+   * @throws IOException if the line cannot be configured
+   */
+  void setParameters(int baudRate, int dataBits, int stopBits, int parity) throws IOException;
+
+  void setDTR(boolean value) throws IOException;
+
+  void setRTS(boolean value) throws IOException;
+
+  /**
+   * Set the flow control of the line
+   * @throws IOException if the line cannot be configured
+   * @throws UnsupportedOperationException if the chip does not support this flow control
+   */
+  void setFlowControl(UsbSerialPort.FlowControl flowControl) throws IOException;
+
+  /**
+   * Read the bytes available, waiting up to timeoutMillis for the first one
+   * @param dest the buffer to read into
+   * @param timeoutMillis maximum wait, 0 waits forever
+   * @return the number of bytes read, 0 if none arrived in time
+   * @throws IOException if the transport failed or was closed
+   */
+  int read(byte[] dest, int timeoutMillis) throws IOException;
+
+  /**
+   * Write the first length bytes of src
+   * @throws IOException if the transport failed or the write timed out
+   */
+  void write(byte[] src, int length, int timeoutMillis) throws IOException;
+
+  /**
+   * @return the size of one incoming transfer, 0 if the transport has no packets
+   */
+  int getReadPacketSize();
+
+  /**
+   * @return the size of one outgoing transfer, 0 if the transport has no packets
+   */
+  int getWritePacketSize();
+
+  void close() throws IOException;
+}
@@ -0,0 +1,315 @@
+package org.apache.cordova.plugins.serial;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Write-then-read exchange with a device: the request is written through the write queue,
+ * then the response is read until a condition is met or the deadline passes. The condition is
+ * one of: expectBytes (at least N bytes), terminator (a byte sequence) or pattern (a regex
+ * matched on the response decoded as ISO-8859-1, one char per byte). With idleGap, a silence
+ * of that many milliseconds after the last byte also completes the response, like the end of
+ * a Modbus RTU frame. Without condition the first bytes received complete the response.
+ * An empty request is not written, the exchange is then a long-poll read.
+ * Each chunk only extends the search: the response is neither copied nor decoded again, and
+ * a pattern search that failed without reaching the end of the response is not repeated.
+ * The response ends where the condition is met, the bytes read past it are left to the next read.
+ */
+public class Transaction {
+
+  // Default deadline of the whole exchange
+  private static final int DEFAULT_TIMEOUT_MILLIS = 1000;
+
+  private final byte[] request;
+  private final int timeoutMillis;
+  private final int expectBytes;
+  private final byte[] terminator;
+  private final Pattern pattern;
+  private final long idleGapNanos;
+
+  // results, the response grows in place and is read as chars through responseChars
+  private byte[] response = new byte[256];
+  private int responseLength = 0;
+  private final CharSequence responseChars = new ResponseChars();
+  // matcher of the pattern over responseChars, and where its next search starts
+  private Matcher matcher = null;
+  private int patternFrom = 0;
+  private boolean matched = false;
+  private boolean idle = false;
+  private long writeNanos = -1;
+  private long firstByteNanos = -1;
+  private long totalNanos = 0;
+
+  /**
+   * @param request the bytes to write
+   * @param opts a {@link JSONObject} containing timeout and the match condition
+   * @throws JSONException if an option is invalid
+   */
+  public Transaction(byte[] request, JSONObject opts) throws JSONException {
+    this.request = request;
+    this.timeoutMillis = opts.has("timeout") ? opts.getInt("timeout") : DEFAULT_TIMEOUT_MILLIS;
+    this.expectBytes = opts.optInt("expectBytes", 0);
+    this.terminator = opts.has("terminator") ? toBytes(opts.get("terminator")) : null;
+    try {
+      this.pattern = opts.has("pattern") ? Pattern.compile(opts.getString("pattern")) : null;
+    } catch (PatternSyntaxException e) {
+      throw new JSONException("Invalid pattern: " + e.getDescription());
+    }
+    this.idleGapNanos = TimeUnit.MILLISECONDS.toNanos(opts.optInt("idleGap", 0));
+  }
+
+  /**
+   * @param opts the options of a read
+   * @return true if the options hold a condition to read until
+   */
+  static boolean hasCondition(JSONObject opts) {
+    return opts.has("expectBytes") || opts.has("terminator") || opts.has("pattern") || opts.has("idleGap");
+  }
+
+  static byte[] toBytes(Object value) throws JSONException {
+    if (value instanceof JSONArray) {
+      JSONArray array = (JSONArray) value;
+      byte[] bytes = new byte[array.length()];
+      for (int i = 0; i < bytes.length; i++) {
+        bytes[i] = (byte) array.getInt(i);
+      }
+      return bytes;
+    }
+    return value.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Run the exchange, holding the read lock of the device so no other read takes the response
+   * @param deviceConnection the open device
+   * @throws IOException if the write or a read fails
+   */
+  public void run(DeviceConnection deviceConnection) throws IOException {
+    final long start = System.nanoTime();
+    final long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    WriteQueue writeQueue = deviceConnection.getWriteQueue();
+    SerialTransport transport = deviceConnection.getTransport();
+    DeviceStats stats = deviceConnection.getStats();
+    if (writeQueue == null || transport == null) {
+      throw new IOException(request.length > 0 ? "Cannot write to a closed port." : "Reading a closed port.");
+    }
+
+    synchronized (deviceConnection.getReadLock()) {
+      if (request.length > 0) {
+        write(writeQueue, deadline);
+      }
+      writeNanos = System.nanoTime() - start;
+
+      ReadBufferPool readBuffers = deviceConnection.getReadBuffers();
+      byte[] buffer = readBuffers.acquire();
+      try {
+        long remaining;
+        long lastByteNanos = 0;
+        while (!matched && (remaining = deadline - System.nanoTime()) > 0) {
+          long wait = remaining;
+          if (idleGapNanos > 0 && responseLength > 0) {
+            long gapLeft = lastByteNanos + idleGapNanos - System.nanoTime();
+            if (gapLeft <= 0) {
+              matched = idle = true;
+              break;
+            }
+            wait = Math.min(wait, gapLeft);
+          }
+          int len = deviceConnection.takeUnread(buffer);
+          if (len == 0) {
+            // a timeout of 0 would block forever
+            int timeout = (int) Math.max(TimeUnit.NANOSECONDS.toMillis(wait), 1);
+            long readStart = System.nanoTime();
+            try {
+              len = transport.read(buffer, timeout);
+            } catch (IOException e) {
+              stats.errors.incrementAndGet();
+              throw e;
+            }
+            stats.onRead(len, System.nanoTime() - readStart);
+            CaptureWriter capture = deviceConnection.getCapture();
+            if (capture != null && len > 0) {
+              capture.record(CaptureWriter.IN, buffer, 0, len);
+            }
+          }
+          if (len > 0) {
+            lastByteNanos = System.nanoTime();
+            if (firstByteNanos < 0) {
+              firstByteNanos = lastByteNanos - start;
+            }
+            int searchFrom = responseLength;
+            append(buffer, len);
+            int end = completeAt(searchFrom);
+            if (end >= 0) {
+              matched = true;
+              if (end < responseLength) {
+                deviceConnection.unread(response, end, responseLength - end);
+                responseLength = end;
+              }
+            }
+          }
+        }
+        // the gap may end with the deadline
+        if (!matched && idleGapNanos > 0 && responseLength > 0 && System.nanoTime() - lastByteNanos >= idleGapNanos) {
+          matched = idle = true;
+        }
+      } finally {
+        readBuffers.release(buffer);
+      }
+    }
+    totalNanos = System.nanoTime() - start;
+  }
+
+  /**
+   * Write the request through the write queue, waiting until it was written. A request still
+   * queued at the deadline is removed from the queue.
+   */
+  private void write(WriteQueue writeQueue, long deadline) throws IOException {
+    final CountDownLatch written = new CountDownLatch(1);
+    final String[] writeError = new String[1];
+    WriteQueue.Listener listener = new WriteQueue.Listener() {
+      @Override
+      public void onWritten() {
+        written.countDown();
+      }
+
+      @Override
+      public void onError(String message) {
+        writeError[0] = message;
+        written.countDown();
+      }
+    };
+    writeQueue.enqueue(request, listener);
+    try {
+      if (!written.await(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS)) {
+        // a request still queued is taken back, so it is not written after the failure was reported
+        if (writeQueue.cancel(listener)) {
+          throw new IOException("Write timed out.");
+        }
+        // its transfer started and cannot be taken back, wait for it, the transfer has its own timeout
+        written.await();
+      }
+    } catch (InterruptedException e) {
+      writeQueue.cancel(listener);
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted.");
+    }
+    if (writeError[0] != null) {
+      throw new IOException(writeError[0]);
+    }
+  }
+
+  private void append(byte[] data, int length) {
+    if (responseLength + length > response.length) {
+      response = Arrays.copyOf(response, Math.max(response.length * 2, responseLength + length));
+    }
+    System.arraycopy(data, 0, response, responseLength, length);
+    responseLength += length;
+  }
+
+  /**
+   * @param searchFrom the length of the response before the last chunk
+   * @return the length of the complete response, or -1 while the condition is not met
+   */
+  private int completeAt(int searchFrom) {
+    if (expectBytes > 0) {
+      return responseLength >= expectBytes ? expectBytes : -1;
+    }
+    if (terminator != null) {
+      // only a terminator ending in the new bytes is new
+      int index = indexOf(response, responseLength, terminator, Math.max(searchFrom - terminator.length + 1, 0));
+      return index >= 0 ? index + terminator.length : -1;
+    }
+    if (pattern != null) {
+      if (matcher == null) {
+        matcher = pattern.matcher(responseChars);
+      } else {
+        matcher.reset(responseChars);
+      }
+      // the bounds only limit where a match starts, lookarounds and anchors see the whole response
+      matcher.region(patternFrom, responseLength).useTransparentBounds(true).useAnchoringBounds(false);
+      if (matcher.find()) {
+        return matcher.end();
+      }
+      // a search that failed without reaching the end fails the same whatever follows, only
+      // the starts in the next chunk are left
+      if (!matcher.hitEnd()) {
+        patternFrom = responseLength;
+      }
+      return -1;
+    }
+    // with only an idle gap, the response ends with the silence
+    return idleGapNanos == 0 && responseLength > 0 ? responseLength : -1;
+  }
+
+  /**
+   * @return the index of the first occurrence of sequence in the first length bytes of data, starting at from, or -1
+   */
+  static int indexOf(byte[] data, int length, byte[] sequence, int from) {
+    for (int i = from; i <= length - sequence.length; i++) {
+      int j = 0;
+      while (j < sequence.length && data[i + j] == sequence[j]) {
+        j++;
+      }
+      if (j == sequence.length) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  public byte[] getResponse() {
+    return Arrays.copyOf(response, responseLength);
+  }
+
+  /**
+   * The response decoded as ISO-8859-1, one char per byte, without copy
+   */
+  private class ResponseChars implements CharSequence {
+
+    @Override
+    public int length() {
+      return responseLength;
+    }
+
+    @Override
+    public char charAt(int index) {
+      return (char) (response[index] & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return new String(response, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public String toString() {
+      return new String(response, 0, responseLength, StandardCharsets.ISO_8859_1);
+    }
+  }
+
+  /**
+   * @return whether the condition was met and the timings of the exchange, in milliseconds
+   */
+  public JSONObject getInfo() {
+    JSONObject info = new JSONObject();
+    try {
+      info.put("matched", matched);
+      info.put("timedOut", !matched);
+      info.put("idle", idle);
+      info.put("bytes", responseLength);
+      info.put("writeMillis", writeNanos / 1e6);
+      info.put("firstByteMillis", firstByteNanos >= 0 ? firstByteNanos / 1e6 : -1);
+      info.put("totalMillis", totalNanos / 1e6);
+    } catch (JSONException ignored) {}
+    return info;
+  }
+}
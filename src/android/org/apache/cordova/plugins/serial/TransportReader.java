@@ -0,0 +1,119 @@
+package org.apache.cordova.plugins.serial;
+
+import android.util.Log;
+import java.util.Arrays;
+
+/**
+ * Dedicated reader of a streaming session: reads the transport in a loop on its own thread and
+ * hands every chunk to a listener, until stopped or the transport fails.
+ */
+public class TransportReader implements Runnable {
+
+  // logging tag
+  private final String TAG = TransportReader.class.getSimpleName();
+  // default timeout of one read, bounds the time stop() waits for
+  private static final int READ_WAIT_MILLIS = 200;
+
+  /**
+   * Receives what the reader reads, on the reader thread
+   */
+  public interface Listener {
+    void onNewData(byte[] data);
+
+    void onRunError(Exception e);
+  }
+
+  /**
+   * Holds the reader while what it reads cannot be taken, so no read is issued meanwhile
+   */
+  public interface Gate {
+    /**
+     * @param timeoutMillis the longest wait, 0 to only check
+     * @return true if the reader can read
+     */
+    boolean awaitRoom(long timeoutMillis);
+  }
+
+  private final SerialTransport transport;
+  private final ReadBufferPool readBuffers;
+  protected final DeviceStats stats;
+  protected final Listener listener;
+  protected final Thread thread;
+  protected volatile boolean running = true;
+  protected Gate gate = null;
+  private int readTimeoutMillis = READ_WAIT_MILLIS;
+
+  /**
+   * @param transport the open transport
+   * @param readBuffers the read buffers of the device
+   * @param stats counts the reads
+   * @param deviceId used to name the reader thread
+   * @param listener receives the chunks read
+   */
+  public TransportReader(SerialTransport transport, ReadBufferPool readBuffers, DeviceStats stats, int deviceId, Listener listener) {
+    this.transport = transport;
+    this.readBuffers = readBuffers;
+    this.stats = stats;
+    this.listener = listener;
+    this.thread = new Thread(this, "SerialReader-" + deviceId);
+  }
+
+  /**
+   * @param readTimeoutMillis the timeout of one read, set before {@link #start()}
+   */
+  public void setReadTimeout(int readTimeoutMillis) {
+    this.readTimeoutMillis = readTimeoutMillis;
+  }
+
+  /**
+   * @param gate holds the reads while it is closed, set before {@link #start()}
+   */
+  public void setGate(Gate gate) {
+    this.gate = gate;
+  }
+
+  public void start() {
+    thread.start();
+  }
+
+  /**
+   * Stop reading, returns at once, the last read ends within its timeout
+   */
+  public void stop() {
+    running = false;
+  }
+
+  /**
+   * Wait until a stopped reader no longer gets in the way of the next reader of the same
+   * transport. The reads of this reader only end with their timeout, nothing to wait for.
+   */
+  public void awaitStop() {}
+
+  @Override
+  public void run() {
+    byte[] buffer = readBuffers.acquire();
+    try {
+      while (running) {
+        // a closed gate is waited for within the read timeout, so stop() is still honoured
+        if (gate != null && !gate.awaitRoom(readTimeoutMillis)) {
+          continue;
+        }
+        long start = System.nanoTime();
+        int len = transport.read(buffer, readTimeoutMillis);
+        stats.onRead(len, System.nanoTime() - start);
+        if (len > 0 && running) {
+          listener.onNewData(Arrays.copyOf(buffer, len));
+        }
+      }
+    } catch (Exception e) {
+      if (running) {
+        stats.errors.incrementAndGet();
+      }
+      running = false;
+      listener.onRunError(e);
+    } finally {
+      readBuffers.release(buffer);
+    }
+    Log.d(TAG, "Reader stopped: " + thread.getName());
+  }
+}
@@ -0,0 +1,70 @@
+package org.apache.cordova.plugins.serial;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.hardware.usb.UsbDevice;
+import android.hardware.usb.UsbManager;
+import android.os.Build;
+import android.util.Log;
+
+/**
+ * {@link BroadcastReceiver} registered for the whole life of the plugin that feeds the
+ * attach/detach events of USB devices to the {@link DeviceRegistry}
+ */
+public class UsbAttachReceiver extends BroadcastReceiver {
+
+  // logging tag
+  private final String TAG = UsbAttachReceiver.class.getSimpleName();
+  // registry to keep up to date
+  private final DeviceRegistry registry;
+
+  /**
+   * @param registry the registry to keep up to date
+   */
+  public UsbAttachReceiver(DeviceRegistry registry) {
+    this.registry = registry;
+  }
+
+  /**
+   * @return a filter matching the attach and detach events
+   */
+  public static IntentFilter createFilter() {
+    IntentFilter filter = new IntentFilter();
+    filter.addAction(UsbManager.ACTION_USB_DEVICE_ATTACHED);
+    filter.addAction(UsbManager.ACTION_USB_DEVICE_DETACHED);
+    return filter;
+  }
+
+  /**
+   * Handle attach and detach events
+   * @param context
+   * @param intent
+   * @see android.content.BroadcastReceiver#onReceive(android.content.Context, android.content.Intent)
+   */
+  @Override
+  public void onReceive(Context context, Intent intent) {
+    String action = intent.getAction();
+    UsbDevice device = getDevice(intent);
+    Log.d(TAG, "Action: " + action + ", device: " + device);
+
+    if (UsbManager.ACTION_USB_DEVICE_ATTACHED.equals(action)) {
+      registry.attach(device);
+    } else if (UsbManager.ACTION_USB_DEVICE_DETACHED.equals(action)) {
+      registry.detach(device);
+    }
+  }
+
+  /**
+   * @param intent a USB broadcast
+   * @return the device the broadcast is about, or null
+   */
+  @SuppressWarnings("deprecation")
+  static UsbDevice getDevice(Intent intent) {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+      return intent.getParcelableExtra(UsbManager.EXTRA_DEVICE, UsbDevice.class);
+    }
+    return (UsbDevice) intent.getParcelableExtra(UsbManager.EXTRA_DEVICE);
+  }
+}
@@ -7,7 +7,6 @@ import android.content.Intent;
 import android.hardware.usb.UsbDevice;
 import android.hardware.usb.UsbDeviceConnection;
 import android.hardware.usb.UsbManager;
-import android.hardware.usb.UsbManager;
 import android.util.Log;
 import java.util.HashMap;
 import org.apache.cordova.CallbackContext;
@@ -59,45 +58,22 @@ public class UsbBroadcastReceiver extends BroadcastReceiver {
     Log.d(TAG, "Action: " + action);
 
     if (USB_PERMISSION.equals(action)) {
+      // every pending request gets the answers for all devices, keep waiting for ours
+      UsbDevice device = UsbAttachReceiver.getDevice(intent);
+      if (device != null && device.getDeviceId() != deviceRequest.getDeviceId()) {
+        return;
+      }
       synchronized (this) {
         // if (intent.getBooleanExtra(UsbManager.EXTRA_PERMISSION_GRANTED, false)) {
         Log.d(TAG, "Permission to connect to the device was accepted!");
-        try {
-          JSONObject json = new JSONObject();
-
-          json.put("deviceId", deviceRequest.getDeviceId());
-          json.put("deviceName", deviceRequest.getDeviceName());
-          json.put("vendorId", deviceRequest.getVendorId());
-          json.put("productId", deviceRequest.getProductId());
-          json.put("deviceClass", deviceRequest.getDeviceClass());
-          json.put("deviceSubclass", deviceRequest.getDeviceSubclass());
-          json.put("deviceProtocol", deviceRequest.getDeviceProtocol());
-          json.put("version", deviceRequest.getVersion());
-          json.put("interfaces", deviceRequest.getInterfaceCount());
-
-          requestPermissionCallback.success(deviceRequest);
-        } catch (JSONException e) {
-          Log.d(TAG, "Error creating JSON object: " + e.getMessage());
-        }
+        requestPermissionCallback.success(deviceRequest);
         // } else {
         //   Log.d(TAG, "Permission to connect to the device was denied!");
         //   requestPermissionCallback.error("Permission to connect to the device was denied!");
         // }
       }
-    } else if (UsbManager.ACTION_USB_DEVICE_ATTACHED.equals(action)) {
-      UsbDevice device = (UsbDevice) intent.getParcelableExtra(
-        UsbManager.EXTRA_DEVICE
-      );
-      Log.d(TAG, "USB Device Attached: " + device);
-      requestPermissionCallback.success(deviceRequest);
-    } else if (UsbManager.ACTION_USB_DEVICE_DETACHED.equals(action)) {
-      UsbDevice device = (UsbDevice) intent.getParcelableExtra(
-        UsbManager.EXTRA_DEVICE
-      );
-      Log.d(TAG, "USB Device Detached: " + device);
-      requestPermissionCallback.success(deviceRequest);
+      // Attach and detach events are handled by the UsbAttachReceiver
+      activity.unregisterReceiver(this);
     }
-
-    activity.unregisterReceiver(this);
   }
 }
@@ -0,0 +1,108 @@
+package org.apache.cordova.plugins.serial;
+
+import android.hardware.usb.UsbDeviceConnection;
+import com.hoho.android.usbserial.driver.FtdiSerialDriver;
+import com.hoho.android.usbserial.driver.UsbSerialPort;
+import java.io.IOException;
+
+/**
+ * {@link SerialTransport} over a port of a usb-serial-for-android driver
+ */
+public class UsbSerialTransport implements SerialTransport {
+
+  private final UsbSerialPort port;
+  private final UsbDeviceConnection connection;
+
+  /**
+   * Open a port of a device
+   * @param port the port, from the driver of the device
+   * @param connection the opened device, closed with the transport
+   * @throws IOException if the port cannot be opened, the connection is then closed
+   */
+  public UsbSerialTransport(UsbSerialPort port, UsbDeviceConnection connection) throws IOException {
+    try {
+      port.open(connection);
+    } catch (IOException e) {
+      try {
+        port.close();
+      } catch (IOException ignored) {}
+      connection.close();
+      throw e;
+    }
+    this.port = port;
+    this.connection = connection;
+  }
+
+  public UsbSerialPort getPort() {
+    return port;
+  }
+
+  public UsbDeviceConnection getConnection() {
+    return connection;
+  }
+
+  /**
+   * Set the latency timer of an FTDI chip: the time the chip holds a partly filled packet
+   * before sending it, 16 ms by default
+   * @param millis the timer, from 1 to 255
+   * @return the timer read back from the chip, -1 if the chip has no latency timer
+   * @throws IOException if the timer cannot be set
+   */
+  public int setLatencyTimer(int millis) throws IOException {
+    if (port instanceof FtdiSerialDriver.FtdiSerialPort) {
+      FtdiSerialDriver.FtdiSerialPort ftdiPort = (FtdiSerialDriver.FtdiSerialPort) port;
+      ftdiPort.setLatencyTimer(millis);
+      return ftdiPort.getLatencyTimer();
+    }
+    return -1;
+  }
+
+  @Override
+  public void setParameters(int baudRate, int dataBits, int stopBits, int parity) throws IOException {
+    port.setParameters(baudRate, dataBits, stopBits, parity);
+  }
+
+  @Override
+  public void setDTR(boolean value) throws IOException {
+    port.setDTR(value);
+  }
+
+  @Override
+  public void setRTS(boolean value) throws IOException {
+    port.setRTS(value);
+  }
+
+  @Override
+  public void setFlowControl(UsbSerialPort.FlowControl flowControl) throws IOException {
+    port.setFlowControl(flowControl);
+  }
+
+  @Override
+  public int read(byte[] dest, int timeoutMillis) throws IOException {
+    return port.read(dest, timeoutMillis);
+  }
+
+  @Override
+  public void write(byte[] src, int length, int timeoutMillis) throws IOException {
+    port.write(src, length, timeoutMillis);
+  }
+
+  @Override
+  public int getReadPacketSize() {
+    return port.getReadEndpoint() != null ? port.getReadEndpoint().getMaxPacketSize() : 0;
+  }
+
+  @Override
+  public int getWritePacketSize() {
+    return port.getWriteEndpoint() != null ? port.getWriteEndpoint().getMaxPacketSize() : 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      port.close();
+    } finally {
+      connection.close();
+    }
+  }
+}
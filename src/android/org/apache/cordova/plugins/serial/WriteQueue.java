@@ -0,0 +1,260 @@
+package org.apache.cordova.plugins.serial;
+
+import android.util.Log;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import org.apache.cordova.CallbackContext;
+
+/**
+ * Ordered writes of one device. Writes are queued in call order and written by a dedicated
+ * thread; small pending writes are merged into one transfer of up to the write endpoint
+ * packet size. The callback of a write is resolved once its bytes were written to the port,
+ * and writes are rejected while the queued bytes exceed the queue limit.
+ */
+public class WriteQueue implements Runnable {
+
+  // logging tag
+  private final String TAG = WriteQueue.class.getSimpleName();
+  // timeout of one transfer
+  private static final int WRITE_WAIT_MILLIS = 1000;
+
+  /**
+   * Notified once a write queued by native code is done
+   */
+  public interface Listener {
+    void onWritten();
+
+    void onError(String message);
+  }
+
+  private static class Entry {
+
+    final byte[] data;
+    final CallbackContext callbackContext;
+    final String successMessage;
+    final Listener listener;
+
+    Entry(byte[] data, CallbackContext callbackContext, String successMessage, Listener listener) {
+      this.data = data;
+      this.callbackContext = callbackContext;
+      this.successMessage = successMessage;
+      this.listener = listener;
+    }
+
+    void success() {
+      if (listener != null) {
+        listener.onWritten();
+      } else {
+        callbackContext.success(successMessage);
+      }
+    }
+
+    void error(String message) {
+      if (listener != null) {
+        listener.onError(message);
+      } else {
+        callbackContext.error(message);
+      }
+    }
+  }
+
+  private final SerialTransport transport;
+  private final DeviceStats stats;
+  private final int packetSize;
+  private final int limit;
+  private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+  private final Thread thread;
+  // bytes waiting in entries
+  private int queuedBytes = 0;
+  private boolean running = true;
+  // reused by the writer thread
+  private final ArrayList<Entry> batch = new ArrayList<>();
+  private final byte[] mergeBuffer;
+  // captures the bytes written, null when not capturing
+  private volatile CaptureWriter capture = null;
+
+  /**
+   * @param transport the open transport to write to
+   * @param deviceId used to name the writer thread
+   * @param limit maximum number of queued bytes
+   * @param stats counts the transfers
+   */
+  public WriteQueue(SerialTransport transport, int deviceId, int limit, DeviceStats stats) {
+    this.transport = transport;
+    this.stats = stats;
+    int maxPacketSize = transport.getWritePacketSize();
+    this.packetSize = maxPacketSize > 0 ? maxPacketSize : 64;
+    this.limit = limit;
+    this.mergeBuffer = new byte[packetSize];
+    this.thread = new Thread(this, "SerialWriter-" + deviceId);
+  }
+
+  public void start() {
+    thread.start();
+  }
+
+  /**
+   * Stop the writer thread, the writes still queued are rejected
+   */
+  public void stop() {
+    synchronized (this) {
+      running = false;
+      notifyAll();
+    }
+  }
+
+  /**
+   * Queue a write
+   * @param data the bytes to write
+   * @param callbackContext resolved with successMessage once written, or rejected
+   * @param successMessage the message sent on success
+   * @return false if the write was rejected
+   */
+  public boolean enqueue(byte[] data, CallbackContext callbackContext, String successMessage) {
+    return enqueue(new Entry(data, callbackContext, successMessage, null));
+  }
+
+  /**
+   * Queue a write done on behalf of native code
+   * @param data the bytes to write
+   * @param listener notified once written, or rejected
+   * @return false if the write was rejected
+   */
+  public boolean enqueue(byte[] data, Listener listener) {
+    return enqueue(new Entry(data, null, null, listener));
+  }
+
+  private boolean enqueue(Entry entry) {
+    synchronized (this) {
+      if (running && queuedBytes + entry.data.length <= Math.max(limit, entry.data.length)) {
+        entries.addLast(entry);
+        queuedBytes += entry.data.length;
+        notifyAll();
+        return true;
+      }
+    }
+    entry.error(running ? "Write queue is full." : "Cannot write to a closed port.");
+    return false;
+  }
+
+  /**
+   * Take back a write queued by native code that was not written yet
+   * @param listener the listener the write was queued with
+   * @return true if the write was removed, false if its transfer already started or it is done
+   */
+  public boolean cancel(Listener listener) {
+    synchronized (this) {
+      Iterator<Entry> iterator = entries.iterator();
+      while (iterator.hasNext()) {
+        Entry entry = iterator.next();
+        if (entry.listener == listener) {
+          iterator.remove();
+          queuedBytes -= entry.data.length;
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  public void setCapture(CaptureWriter capture) {
+    this.capture = capture;
+  }
+
+  public synchronized int getQueuedBytes() {
+    return queuedBytes;
+  }
+
+  public synchronized int getQueuedWrites() {
+    return entries.size();
+  }
+
+  @Override
+  public void run() {
+    while (true) {
+      int length = 0;
+      synchronized (this) {
+        while (running && entries.isEmpty()) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            running = false;
+          }
+        }
+        if (!running) {
+          break;
+        }
+        // take the first write and merge the following ones while they fit in one packet
+        Entry entry = entries.pollFirst();
+        batch.add(entry);
+        length = entry.data.length;
+        while (length < packetSize && !entries.isEmpty() && length + entries.peekFirst().data.length <= packetSize) {
+          Entry next = entries.pollFirst();
+          batch.add(next);
+          length += next.data.length;
+        }
+        queuedBytes -= length;
+      }
+
+      String error = null;
+      long start = System.nanoTime();
+      try {
+        byte[] data;
+        if (batch.size() == 1) {
+          data = batch.get(0).data;
+        } else {
+          int offset = 0;
+          for (Entry entry : batch) {
+            System.arraycopy(entry.data, 0, mergeBuffer, offset, entry.data.length);
+            offset += entry.data.length;
+          }
+          data = mergeBuffer;
+        }
+        transport.write(data, length, WRITE_WAIT_MILLIS);
+        stats.onWrite(length, System.nanoTime() - start);
+        CaptureWriter writeCapture = capture;
+        if (writeCapture != null) {
+          writeCapture.record(CaptureWriter.OUT, data, 0, length);
+        }
+      } catch (IOException | NullPointerException e) {
+        boolean stopped;
+        synchronized (this) {
+          stopped = !running;
+        }
+        if (stopped) {
+          // the port was closed under the write
+          error = "Cannot write to a closed port.";
+        } else {
+          // Log.d(TAG, "Error writing to port: " + Objects.requireNonNull(e.getMessage()));
+          error = "Error writing to port: " + e.getMessage();
+          // the driver reports a write timeout with a SerialTimeoutException
+          if (e instanceof InterruptedIOException) {
+            stats.writeTimeouts.incrementAndGet();
+          }
+          stats.errors.incrementAndGet();
+        }
+      }
+      for (Entry entry : batch) {
+        if (error == null) {
+          entry.success();
+        } else {
+          entry.error(error);
+        }
+      }
+      batch.clear();
+    }
+
+    // reject what is left once stopped
+    synchronized (this) {
+      for (Entry entry : entries) {
+        entry.error("Cannot write to a closed port.");
+      }
+      entries.clear();
+      queuedBytes = 0;
+    }
+    Log.d(TAG, "Writer stopped: " + thread.getName());
+  }
+}
@@ -1,3 +1,11 @@
+// Cordova passes ArrayBuffer arguments to the native side as binary, typed arrays have to be unwrapped
+function toArrayBuffer(data) {
+  if (ArrayBuffer.isView(data)) {
+    return data.buffer.slice(data.byteOffset, data.byteOffset + data.byteLength);
+  }
+  return data;
+}
+
 const serial = {
   openSerialByDeviceId: function (opts, successCallback, errorCallback) {
     cordova.exec(
@@ -23,6 +31,15 @@ const serial = {
       [{ opts: opts }],
     );
   },
+  requestPermissionAll: function (opts, successCallback, errorCallback) {
+    cordova.exec(
+      successCallback,
+      errorCallback,
+      "Serial",
+      "requestPermissionAll",
+      [{ opts: opts }],
+    );
+  },
   writeSerialByDeviceId: function (opts, successCallback, errorCallback) {
     cordova.exec(
       successCallback,
@@ -32,6 +49,45 @@ const serial = {
       [{ opts: opts }],
     );
   },
+  writeSerialBinaryByDeviceId: function (
+    opts,
+    data,
+    successCallback,
+    errorCallback,
+  ) {
+    cordova.exec(
+      successCallback,
+      errorCallback,
+      "Serial",
+      "writeSerialBinaryByDeviceId",
+      [{ opts: opts }, toArrayBuffer(data)],
+    );
+  },
+  transact: function (opts, data, successCallback, errorCallback) {
+    var args = [{ opts: opts }];
+    if (typeof data === "string") {
+      args[0].opts = Object.assign({}, opts, { data: data });
+    } else if (data) {
+      args.push(toArrayBuffer(data));
+    }
+    cordova.exec(successCallback, errorCallback, "Serial", "transact", args);
+  },
+  readExactly: function (opts, successCallback, errorCallback, progressCallback) {
+    cordova.exec(
+      function (data, info) {
+        // progress events come as a single object, the bytes come with their info
+        if (data instanceof ArrayBuffer) {
+          successCallback(data, info);
+        } else if (progressCallback) {
+          progressCallback(data);
+        }
+      },
+      errorCallback,
+      "Serial",
+      "readExactly",
+      [{ opts: opts }],
+    );
+  },
   readSerialByDeviceId: function (opts, successCallback, errorCallback) {
     cordova.exec(
       successCallback,
@@ -41,6 +97,96 @@ const serial = {
       [{ opts: opts }],
     );
   },
+  closeSerialByDeviceId: function (opts, successCallback, errorCallback) {
+    cordova.exec(
+      successCallback,
+      errorCallback,
+      "Serial",
+      "closeSerialByDeviceId",
+      [{ opts: opts }],
+    );
+  },
+  getCoalescingStats: function (opts, successCallback, errorCallback) {
+    cordova.exec(
+      successCallback,
+      errorCallback,
+      "Serial",
+      "getCoalescingStats",
+      [{ opts: opts }],
+    );
+  },
+  getFramingStats: function (opts, successCallback, errorCallback) {
+    cordova.exec(
+      successCallback,
+      errorCallback,
+      "Serial",
+      "getFramingStats",
+      [{ opts: opts }],
+    );
+  },
+  getStats: function (opts, successCallback, errorCallback) {
+    cordova.exec(
+      successCallback,
+      errorCallback,
+      "Serial",
+      "getStats",
+      [{ opts: opts }],
+    );
+  },
+  startCapture: function (opts, successCallback, errorCallback) {
+    cordova.exec(
+      successCallback,
+      errorCallback,
+      "Serial",
+      "startCapture",
+      [{ opts: opts }],
+    );
+  },
+  stopCapture: function (opts, successCallback, errorCallback) {
+    cordova.exec(
+      successCallback,
+      errorCallback,
+      "Serial",
+      "stopCapture",
+      [{ opts: opts }],
+    );
+  },
+  openReplay: function (opts, successCallback, errorCallback) {
+    cordova.exec(
+      successCallback,
+      errorCallback,
+      "Serial",
+      "openReplay",
+      [{ opts: opts }],
+    );
+  },
+  pauseReading: function (opts, successCallback, errorCallback) {
+    cordova.exec(
+      successCallback,
+      errorCallback,
+      "Serial",
+      "pauseReading",
+      [{ opts: opts }],
+    );
+  },
+  resumeReading: function (opts, successCallback, errorCallback) {
+    cordova.exec(
+      successCallback,
+      errorCallback,
+      "Serial",
+      "resumeReading",
+      [{ opts: opts }],
+    );
+  },
+  registerDrivers: function (opts, successCallback, errorCallback) {
+    cordova.exec(
+      successCallback,
+      errorCallback,
+      "Serial",
+      "registerDrivers",
+      [{ opts: opts }],
+    );
+  },
   getDevices: function (successCallback, errorCallback) {
     cordova.exec(
       successCallback,
@@ -65,6 +211,15 @@ const serial = {
       { data: hexString },
     ]);
   },
+  writeBinary: function (data, successCallback, errorCallback) {
+    cordova.exec(
+      successCallback,
+      errorCallback,
+      "Serial",
+      "writeSerialBinary",
+      [toArrayBuffer(data)],
+    );
+  },
   read: function (successCallback, errorCallback) {
     cordova.exec(successCallback, errorCallback, "Serial", "readSerial", []);
   },
@@ -80,6 +235,15 @@ const serial = {
       [],
     );
   },
+  registerDeviceChangeCallback: function (successCallback, errorCallback) {
+    cordova.exec(
+      successCallback,
+      errorCallback,
+      "Serial",
+      "registerDeviceChangeCallback",
+      [],
+    );
+  },
   registerReadCallback: function (successCallback, errorCallback) {
     cordova.exec(
       successCallback,